@@ -0,0 +1,72 @@
+package lab3.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.AccumulatorMode;
+import lab3.statistics.aggregators.ReceiptStatisticsSpliteratorAggregator;
+import lab3.statistics.aggregators.ReceiptStatisticsStreamAggregator;
+import lab3.statistics.model.ReceiptStatistics;
+
+/**
+ * Compares accumulator storage modes of {@code ReceiptStatisticsCollector} on the parallel paths.
+ * Run with {@code JmhRunner AccumulatorModeBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AccumulatorModeBenchmark {
+
+    private static final int SPLITERATOR_MIN_BATCH = 256;
+
+    @Param({ "5000", "50000", "250000" })
+    private int datasetSize;
+
+    @Param({ "SINGLE_WRITER", "CONCURRENT", "DICTIONARY_ENCODED" })
+    private AccumulatorMode mode;
+
+    /**
+     * Zipf exponent of the item/customer/city catalogue; a negative value keeps random, nearly unique keys.
+     */
+    @Param({ "-1", "1.0" })
+    private double keySkew;
+
+    private List<Receipt> receipts;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SimpleReceiptGenerator generator = new SimpleReceiptGenerator()
+                .withItemRange(2, 7)
+                .withPriceRange(5.0, 200.0);
+        if (keySkew >= 0) {
+            generator.withCatalogue(10_000, 50_000, 2_000, keySkew);
+        }
+        receipts = BenchmarkDatasets.receipts(keySkew >= 0 ? "catalogue-" + keySkew : "default", generator, datasetSize);
+    }
+
+    @Benchmark
+    public ReceiptStatistics parallelStream() {
+        return ReceiptStatisticsStreamAggregator.aggregateParallel(receipts, 0L, mode);
+    }
+
+    @Benchmark
+    public ReceiptStatistics parallelStreamWithCustomSpliterator() {
+        return ReceiptStatisticsSpliteratorAggregator.aggregateParallel(
+                receipts,
+                0L,
+                SPLITERATOR_MIN_BATCH,
+                mode);
+    }
+}
@@ -0,0 +1,35 @@
+package lab3.benchmarks;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Receipt;
+import lab3.storage.ReceiptDatasetStore;
+
+/**
+ * Fixed benchmark datasets. The first trial generates receipts with {@link #SEED} and stores them
+ * under {@code -Dlab3.datasets=<dir>} (default {@code target/datasets}); later trials, forks and
+ * runs load the same snapshot instead of drawing new random receipts.
+ */
+final class BenchmarkDatasets {
+
+    static final long SEED = 20_240_601L;
+    private static final LocalDateTime DATE_WINDOW_END = LocalDateTime.of(2024, 6, 1, 0, 0);
+
+    private BenchmarkDatasets() {
+    }
+
+    /**
+     * @param name identifies the generator settings, it becomes part of the file name
+     */
+    static List<Receipt> receipts(String name, SimpleReceiptGenerator generator, int size) {
+        return ReceiptDatasetStore.loadOrGenerate(path(name, size), generator.withDateWindowEnd(DATE_WINDOW_END), size, SEED);
+    }
+
+    static Path path(String name, int size) {
+        Path directory = Path.of(System.getProperty("lab3.datasets", "target/datasets"));
+        return directory.resolve(name + "-" + size + "-" + SEED + ".rcpt");
+    }
+}
@@ -0,0 +1,84 @@
+package lab3.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.aggregators.ReceiptStatisticsParallelFlowableAggregator;
+import lab3.statistics.aggregators.ReceiptStatisticsSubscriber;
+import lab3.statistics.model.ReceiptStatistics;
+
+/**
+ * Streaming aggregation on one subscriber and on parallel rails against the batch
+ * {@code parallelStream} collector, all on the same dataset. The rail parameters live in
+ * {@link Rails}, so only {@link #parallelRails} runs for each of their combinations. Run with
+ * {@code JmhRunner FlowableAggregationBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FlowableAggregationBenchmark {
+
+    @Param({ "50000", "250000" })
+    private int datasetSize;
+
+    private List<Receipt> receipts;
+    private ReceiptStatisticsCollector collector;
+
+    @State(Scope.Thread)
+    public static class Rails {
+
+        @Param({ "1", "4", "8" })
+        private int rails;
+
+        @Param({ "32", "128", "1024" })
+        private int prefetch;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SimpleReceiptGenerator generator = new SimpleReceiptGenerator()
+                .withItemRange(2, 7)
+                .withPriceRange(5.0, 200.0);
+        receipts = BenchmarkDatasets.receipts("default", generator, datasetSize);
+        collector = ReceiptStatisticsCollector.toStatistics();
+    }
+
+    @Benchmark
+    public ReceiptStatistics parallelStream() {
+        return receipts.parallelStream().collect(collector);
+    }
+
+    @Benchmark
+    public ReceiptStatistics singleSubscriber() {
+        ReceiptStatisticsSubscriber subscriber = new ReceiptStatisticsSubscriber(collector);
+        Flowable.fromIterable(receipts).subscribe(subscriber);
+        return subscriber.result().join();
+    }
+
+    @Benchmark
+    public ReceiptStatistics parallelRails(Rails rails) {
+        return ReceiptStatisticsParallelFlowableAggregator
+                .aggregate(
+                        Flowable.fromIterable(receipts),
+                        collector,
+                        rails.rails,
+                        rails.prefetch,
+                        Schedulers.computation())
+                .blockingGet();
+    }
+}
@@ -0,0 +1,65 @@
+package lab3.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.IncrementalReceiptStatistics;
+import lab3.statistics.aggregators.ReceiptStatisticsStreamAggregator;
+import lab3.statistics.model.ReceiptStatistics;
+
+/**
+ * Dashboard refresh after {@code newReceipts} arrivals: a full parallel re-aggregation of the
+ * dataset against adding the new receipts to {@link IncrementalReceiptStatistics} and taking a
+ * snapshot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IncrementalStatisticsBenchmark {
+
+    @Param({ "250000" })
+    private int datasetSize;
+
+    @Param({ "1000" })
+    private int newReceipts;
+
+    private List<Receipt> receipts;
+    private List<Receipt> arrivals;
+    private IncrementalReceiptStatistics incremental;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SimpleReceiptGenerator generator = new SimpleReceiptGenerator()
+                .withItemRange(2, 7)
+                .withPriceRange(5.0, 200.0)
+                .withCatalogue(10_000, 50_000, 2_000, 1.0);
+        receipts = BenchmarkDatasets.receipts("catalogue-1.0", generator, datasetSize);
+        arrivals = receipts.subList(0, newReceipts);
+        incremental = new IncrementalReceiptStatistics();
+        incremental.addAll(receipts);
+    }
+
+    @Benchmark
+    public ReceiptStatistics fullRecompute() {
+        return ReceiptStatisticsStreamAggregator.aggregateParallel(receipts, 0L);
+    }
+
+    @Benchmark
+    public ReceiptStatistics incrementalRefresh() {
+        // те же чеки добавляются повторно: важна стоимость add + snapshot, а не точность результата
+        incremental.addAll(arrivals);
+        return incremental.snapshot();
+    }
+}
@@ -0,0 +1,70 @@
+package lab3.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.model.ReceiptStatistics;
+import lab3.util.ItemNameCache;
+
+/**
+ * Delayed item name lookups over a Zipf-distributed catalogue, with and without an
+ * {@link ItemNameCache}. Each invocation starts with an empty cache, so the cached variant pays one
+ * lookup per distinct name that fits in the cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ItemNameCacheBenchmark {
+
+    @Param({ "200", "1000" })
+    private int datasetSize;
+
+    @Param({ "1" })
+    private long itemNameDelayMillis;
+
+    @Param({ "500" })
+    private int catalogueSize;
+
+    @Param({ "1.0" })
+    private double zipfExponent;
+
+    @Param({ "64", "512" })
+    private int cacheSize;
+
+    private List<Receipt> receipts;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SimpleReceiptGenerator generator = new SimpleReceiptGenerator()
+                .withItemRange(2, 7)
+                .withPriceRange(5.0, 200.0)
+                .withItemCatalogue(catalogueSize, zipfExponent);
+        receipts = BenchmarkDatasets.receipts("items-" + catalogueSize + "-" + zipfExponent, generator, datasetSize);
+    }
+
+    @Benchmark
+    public ReceiptStatistics uncached() {
+        return receipts.parallelStream()
+                .collect(ReceiptStatisticsCollector.withItemNameDelay(itemNameDelayMillis));
+    }
+
+    @Benchmark
+    public ReceiptStatistics cached() {
+        ItemNameCache cache = new ItemNameCache(cacheSize);
+        return receipts.parallelStream()
+                .collect(ReceiptStatisticsCollector.withItemNameCache(cache, itemNameDelayMillis));
+    }
+}
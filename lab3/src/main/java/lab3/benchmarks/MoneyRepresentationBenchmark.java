@@ -0,0 +1,111 @@
+package lab3.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Money;
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.Collectors.SummationMode;
+import lab3.statistics.aggregators.ReceiptStatisticsColumnarAggregator;
+import lab3.statistics.columnar.ReceiptBatch;
+import lab3.statistics.model.ReceiptStatistics;
+
+/**
+ * Amounts as {@code double} major units against {@code long} minor units (cents): the bare total
+ * revenue loop over the batch columns, the full columnar aggregation and the
+ * {@code ReceiptStatisticsCollector} on the same receipts, the latter two with
+ * {@link SummationMode#DOUBLE} and {@link SummationMode#MINOR_UNITS}. Prices are drawn in whole
+ * cents, so both representations describe the same amounts. Run with
+ * {@code JmhRunner MoneyRepresentationBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MoneyRepresentationBenchmark {
+
+    @Param({ "50000", "250000" })
+    private int datasetSize;
+
+    private List<Receipt> receipts;
+    private ReceiptBatch batch;
+    private double[] unitPrice;
+    private long[] unitPriceMinor;
+    private int[] quantity;
+    private ReceiptStatisticsCollector doubleCollector;
+    private ReceiptStatisticsCollector minorUnitsCollector;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SimpleReceiptGenerator generator = new SimpleReceiptGenerator()
+                .withItemRange(2, 7)
+                .withPriceRange(5.0, 200.0)
+                .withMinorUnitPrices()
+                .withCatalogue(10_000, 50_000, 2_000, 1.0);
+        receipts = BenchmarkDatasets.receipts("catalogue-1.0-cents", generator, datasetSize);
+        batch = ReceiptBatch.from(receipts);
+        unitPrice = batch.unitPrice();
+        unitPriceMinor = batch.unitPriceMinor();
+        quantity = batch.quantity();
+        doubleCollector = ReceiptStatisticsCollector.toStatistics();
+        minorUnitsCollector = ReceiptStatisticsCollector.toStatistics().withSummationMode(SummationMode.MINOR_UNITS);
+    }
+
+    @Benchmark
+    public double totalRevenueDouble() {
+        double total = 0;
+        for (int i = 0; i < unitPrice.length; i++) {
+            total += unitPrice[i] * quantity[i];
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double totalRevenueFixedPoint() {
+        double total = 0;
+        for (int i = 0; i < unitPrice.length; i++) {
+            total += SummationMode.FIXED_POINT.lineAmount(unitPrice[i], quantity[i]);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double totalRevenueMinorUnits() {
+        long total = 0;
+        for (int i = 0; i < unitPriceMinor.length; i++) {
+            total += unitPriceMinor[i] * quantity[i];
+        }
+        return Money.toMajor(total);
+    }
+
+    @Benchmark
+    public ReceiptStatistics columnarDouble() {
+        return ReceiptStatisticsColumnarAggregator.aggregate(batch);
+    }
+
+    @Benchmark
+    public ReceiptStatistics columnarMinorUnits() {
+        return ReceiptStatisticsColumnarAggregator.aggregateMinorUnits(batch);
+    }
+
+    @Benchmark
+    public ReceiptStatistics collectorDouble() {
+        return receipts.stream().collect(doubleCollector);
+    }
+
+    @Benchmark
+    public ReceiptStatistics collectorMinorUnits() {
+        return receipts.stream().collect(minorUnitsCollector);
+    }
+}
@@ -0,0 +1,140 @@
+package lab3.benchmarks;
+
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Receipt;
+import lab3.statistics.aggregators.ReceiptStatisticsReactiveAggregator;
+import lab3.statistics.aggregators.ReceiptStatisticsStreamAggregator;
+import lab3.statistics.model.ReceiptStatistics;
+
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Checks that {@link ReceiptStatisticsReactiveAggregator} produces the same statistics as the
+ * sequential {@link ReceiptStatisticsStreamAggregator} on the same receipts. Counts must match exactly;
+ * amounts may only differ by the rounding of a different summation order.
+ */
+public final class ReactiveAggregatorParityCheck {
+
+    private static final double RELATIVE_TOLERANCE = 1e-9;
+
+    private ReactiveAggregatorParityCheck() {
+    }
+
+    /**
+     * Аргументы: [количество чеков]. Завершается с кодом 1, если результаты расходятся.
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 250_000;
+        List<Receipt> receipts = new SimpleReceiptGenerator()
+                .withItemRange(2, 7)
+                .withPriceRange(5.0, 200.0)
+                .generateMany(size, BenchmarkDatasets.SEED);
+
+        ReceiptStatistics expected = ReceiptStatisticsStreamAggregator.aggregateSequential(receipts, 0L);
+        List<String> mismatches = new ArrayList<>();
+        mismatches.addAll(compare("shared runtime",
+                expected, ReceiptStatisticsReactiveAggregator.aggregateReactive(receipts, 0L)));
+        // мелкие пакеты: много аккумуляторов и много вызовов combine
+        mismatches.addAll(compare("batch 64, computation",
+                expected, ReceiptStatisticsReactiveAggregator.aggregateReactive(
+                        receipts, 0L, 64, Runtime.getRuntime().availableProcessors(), Schedulers.computation())));
+
+        if (!mismatches.isEmpty()) {
+            mismatches.forEach(System.err::println);
+            System.exit(1);
+        }
+        System.out.println("Реактивный агрегатор совпадает с потоковым на " + size + " чеках");
+    }
+
+    static List<String> compare(String label, ReceiptStatistics expected, ReceiptStatistics actual) {
+        List<String> mismatches = new ArrayList<>();
+        check(mismatches, label + ": totalOrders", expected.getTotalOrders(), actual.getTotalOrders());
+        check(mismatches, label + ": totalRevenue", expected.getTotalRevenue(), actual.getTotalRevenue());
+        check(mismatches, label + ": averageReceiptAmount",
+                expected.getAverageReceiptAmount(), actual.getAverageReceiptAmount());
+        check(mismatches, label + ": totalAverage", expected.getTotalAverage(), actual.getTotalAverage());
+        check(mismatches, label + ": minReceiptAmount", expected.getMinReceiptAmount(), actual.getMinReceiptAmount());
+        check(mismatches, label + ": maxReceiptAmount", expected.getMaxReceiptAmount(), actual.getMaxReceiptAmount());
+        check(mismatches, label + ": receiptAmountPercentiles",
+                expected.getReceiptAmountPercentiles(), actual.getReceiptAmountPercentiles());
+        check(mismatches, label + ": ordersByStatus", expected.getOrdersByStatus(), actual.getOrdersByStatus());
+        check(mismatches, label + ": totalItemsSold", expected.getTotalItemsSold(), actual.getTotalItemsSold());
+        check(mismatches, label + ": uniqueCustomers", expected.getUniqueCustomers(), actual.getUniqueCustomers());
+        check(mismatches, label + ": totalLoyaltyPoints",
+                expected.getTotalLoyaltyPoints(), actual.getTotalLoyaltyPoints());
+        check(mismatches, label + ": revenueByMonth", expected.getRevenueByMonth(), actual.getRevenueByMonth());
+        check(mismatches, label + ": topCustomersBySpending",
+                expected.getTopCustomersBySpending(), actual.getTopCustomersBySpending());
+        check(mismatches, label + ": topCustomersByOrderCount",
+                expected.getTopCustomersByOrderCount(), actual.getTopCustomersByOrderCount());
+        check(mismatches, label + ": topItemsByQuantity",
+                expected.getTopItemsByQuantity(), actual.getTopItemsByQuantity());
+        check(mismatches, label + ": itemAverageReceipts",
+                expected.getItemAverageReceipts(), actual.getItemAverageReceipts());
+        check(mismatches, label + ": topCitiesByRevenue",
+                expected.getTopCitiesByRevenue(), actual.getTopCitiesByRevenue());
+        check(mismatches, label + ": revenueByStatusRanking",
+                expected.getRevenueByStatusRanking(), actual.getRevenueByStatusRanking());
+        check(mismatches, label + ": salesByPriceTier", expected.getSalesByPriceTier(), actual.getSalesByPriceTier());
+        check(mismatches, label + ": topStatesByRevenue",
+                expected.getTopStatesByRevenue(), actual.getTopStatesByRevenue());
+        return mismatches;
+    }
+
+    private static void check(List<String> mismatches, String what, Object expected, Object actual) {
+        if (!matches(expected, actual)) {
+            mismatches.add(what + ": expected " + expected + ", got " + actual);
+        }
+    }
+
+    /**
+     * Values match if they are equal, {@code double}s up to {@link #RELATIVE_TOLERANCE}; lists, maps
+     * and records are compared element by element.
+     */
+    private static boolean matches(Object expected, Object actual) {
+        if (expected instanceof Double a && actual instanceof Double b) {
+            return Math.abs(a - b) <= RELATIVE_TOLERANCE * Math.max(1.0, Math.max(Math.abs(a), Math.abs(b)))
+                    || a.equals(b);
+        }
+        if (expected instanceof List<?> a && actual instanceof List<?> b) {
+            if (a.size() != b.size()) {
+                return false;
+            }
+            for (int i = 0; i < a.size(); i++) {
+                if (!matches(a.get(i), b.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (expected instanceof Map<?, ?> a && actual instanceof Map<?, ?> b) {
+            if (!a.keySet().equals(b.keySet())) {
+                return false;
+            }
+            for (Map.Entry<?, ?> entry : a.entrySet()) {
+                if (!matches(entry.getValue(), b.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (expected instanceof Record a && actual instanceof Record b && a.getClass() == b.getClass()) {
+            for (RecordComponent component : a.getClass().getRecordComponents()) {
+                try {
+                    if (!matches(component.getAccessor().invoke(a), component.getAccessor().invoke(b))) {
+                        return false;
+                    }
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Cannot read " + component.getName(), e);
+                }
+            }
+            return true;
+        }
+        return Objects.equals(expected, actual);
+    }
+}
@@ -5,27 +5,42 @@ import io.reactivex.rxjava3.schedulers.Schedulers;
 import lab3.generators.SimpleReceiptGenerator;
 import lab3.model.Receipt;
 import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.aggregators.AdaptiveDemandController;
+import lab3.statistics.aggregators.ReceiptStatisticsParallelFlowableAggregator;
+import lab3.statistics.aggregators.ReceiptStatisticsSubscriber;
 import lab3.statistics.model.ReceiptStatistics;
-import lab3.util.LatencySimulator;
-import org.reactivestreams.Subscriber;
-import org.reactivestreams.Subscription;
+import lab3.util.LatencyProfile;
 
-import java.util.concurrent.CountDownLatch;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 
 
 public class ReactiveReceiptStatisticsFlowableDemo {
 
+    /**
+     * Аргументы: [профиль задержки] [количество чеков] [задержка на позицию, мс] [целевая задержка буфера, мс]
+     * [число рельс] [prefetch]. При числе рельс больше нуля поток агрегируется параллельными рельсами
+     * ({@link ReceiptStatisticsParallelFlowableAggregator}), иначе одним подписчиком.
+     */
     public static void main(String[] args) throws InterruptedException {
         SimpleReceiptGenerator generator = new SimpleReceiptGenerator()
                 .withItemRange(1, 8)
                 .withPriceRange(5, 1000);
 
-        int totalReceipts = 10_000;          // количество чеков для примера
-        int requestBatchSize = 200;          // сколько элементов Subscriber запрашивает за раз
-        long itemDelayMs = 5L;               // задержка для имитации "работы" при обработке
+        // профиль задержки: busy-spin (CPU), park (I/O), uniform, lognormal, lognormal-spikes
+        LatencyProfile latencyProfile = LatencyProfile.named(args.length > 0 ? args[0] : "busy-spin");
+        int totalReceipts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000; // количество чеков для примера
+        long itemDelayMs = args.length > 2 ? Long.parseLong(args[2]) : 5L;       // задержка имени позиции
+        long targetLatencyMs = args.length > 3 ? Long.parseLong(args[3]) : 50L;   // сколько может ждать буфер
+        int rails = args.length > 4 ? Integer.parseInt(args[4]) : 0;              // 0 — один подписчик
+        int prefetch = args.length > 5
+                ? Integer.parseInt(args[5])
+                : ReceiptStatisticsParallelFlowableAggregator.DEFAULT_PREFETCH;
 
         // создаём Flowable, который асинхронно генерирует чеки
         Flowable<Receipt> receiptFlowable = Flowable.<Receipt, AtomicInteger>generate(
@@ -39,129 +54,78 @@ public class ReactiveReceiptStatisticsFlowableDemo {
                     }
                 }
                 )
-                .subscribeOn(Schedulers.io())   // генерация идёт на отдельном Scheduler
-                .onBackpressureBuffer(10_000);  // буферизация, если потребитель отстаёт
+                .subscribeOn(Schedulers.io());  // генерация идёт на отдельном Scheduler, по запросу подписчика
+        ReceiptStatisticsCollector collector = ReceiptStatisticsCollector.withItemNameDelay(itemDelayMs, latencyProfile);
 
-        // создаём и подписываем кастомного Subscriber-а
-        CountDownLatch completion = new CountDownLatch(1);
-        ReceiptStatisticsSubscriber subscriber =
-                new ReceiptStatisticsSubscriber(requestBatchSize, itemDelayMs, completion);
+        if (rails > 0) {
+            aggregateOnRails(receiptFlowable, collector, totalReceipts, rails, prefetch);
+            return;
+        }
 
+        // один аккумулятор на весь поток, размер запроса подстраивается под время обработки
+        AdaptiveDemandController demand = new AdaptiveDemandController(
+                AdaptiveDemandController.DEFAULT_INITIAL_DEMAND,
+                AdaptiveDemandController.DEFAULT_MIN_DEMAND,
+                AdaptiveDemandController.DEFAULT_MAX_DEMAND,
+                Duration.ofMillis(targetLatencyMs));
+        ReceiptStatisticsSubscriber subscriber = new ReceiptStatisticsSubscriber(collector, demand);
+        System.out.println("Подписка: " + totalReceipts + " чеков, задержка позиции " + itemDelayMs + " мс");
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> {
+            AdaptiveDemandController.Metrics metrics = subscriber.demandMetrics();
+            System.out.printf("Обработано %d, запрос %d, в очереди %d (~%d мс), %.0f чеков/с%n",
+                    metrics.delivered(), metrics.demand(), metrics.queueDepth(),
+                    metrics.bufferLatency().toMillis(), metrics.processingRate());
+        }, 1, 1, TimeUnit.SECONDS);
         receiptFlowable.subscribe(subscriber);
 
-        // дожидаемся завершения обработки (для демонстрации)
-        boolean finished = completion.await(30, TimeUnit.SECONDS);
-        if (!finished) {
+        try {
+            printStatistics(subscriber.result().get(30, TimeUnit.MINUTES));
+            System.out.printf("Скорость: %.0f чеков/с (последний запрос %d)%n",
+                    subscriber.receiptsPerSecond(), subscriber.demandMetrics().demand());
+        } catch (ExecutionException e) {
+            System.err.println("Ошибка в потоке данных: " + e.getCause().getMessage());
+            e.getCause().printStackTrace();
+        } catch (TimeoutException e) {
             System.err.println("Обработка чеков не завершилась за ожидаемое время.");
+        } finally {
+            reporter.shutdownNow();
         }
     }
 
-    /**
-     * Собственный Subscriber, который накапливает ReceiptStatistics и управляет скоростью потребления.
-     */
-    public static class ReceiptStatisticsSubscriber implements Subscriber<Receipt> {
-        private final int batchSize;
-        private final long delayMillis;
-        private final CountDownLatch completionLatch;
-        private Subscription subscription;
-
-        private final AtomicReference<ReceiptStatistics> statsRef = new AtomicReference<>(new ReceiptStatistics());
-        private int processedInBatch = 0;
-
-        public ReceiptStatisticsSubscriber(int batchSize, long delayMillis, CountDownLatch completionLatch) {
-            this.batchSize = batchSize;
-            this.delayMillis = delayMillis;
-            this.completionLatch = completionLatch;
-        }
-
-        @Override
-        public void onSubscribe(Subscription s) {
-            this.subscription = s;
-            System.out.println("Подписка установлена. Запрашиваю первый пакет из " + batchSize + " чеков...");
-            s.request(batchSize); // первый запрос
-        }
-
-        @Override
-        public void onNext(Receipt receipt) {
-            try {
-                // Обрабатываем чек — обновляем статистику через коллектор
-                ReceiptStatistics newStats = processReceipt(receipt);
-                statsRef.set(mergeStatistics(statsRef.get(), newStats));
-
-                processedInBatch++;
-                if (processedInBatch >= batchSize) {
-                    processedInBatch = 0;
-                    System.out.println("Запрашиваю следующий пакет из " + batchSize + " чеков...");
-                    subscription.request(batchSize);
-                }
-
-                if (delayMillis > 0) {
-                    LatencySimulator.emulateWork(delayMillis); // имитация задержки при обработке
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                completionLatch.countDown();
-            }
-        }
-
-        @Override
-        public void onError(Throwable t) {
-            System.err.println("Ошибка в потоке данных: " + t.getMessage());
-            t.printStackTrace();
-            completionLatch.countDown();
-        }
-
-        @Override
-        public void onComplete() {
-            System.out.println("\nПоток завершён ✅");
-            ReceiptStatistics stats = statsRef.get();
-            System.out.println("Всего заказов: " + stats.getTotalOrders());
-            System.out.println("Общая выручка: " + stats.getTotalRevenue());
-            System.out.println("Средний чек: " + stats.getAverageReceiptAmount());
-            System.out.println("Мин. чек: " + stats.getMinReceiptAmount());
-            System.out.println("Макс. чек: " + stats.getMaxReceiptAmount());
-            System.out.println("Уникальных клиентов: " + stats.getUniqueCustomers());
-            completionLatch.countDown();
-        }
-
-        /**
-         * Обработка одного Receipt через уже существующий ReceiptStatisticsCollector.
-         */
-        private ReceiptStatistics processReceipt(Receipt receipt) {
-            return Flowable.just(receipt)
-                    .collect(() -> new ReceiptStatistics(),
-                            (acc, r) -> acc.merge(
-                                    Flowable.just(r).toList()
-                                            .blockingGet()
-                                            .stream()
-                                            .collect(ReceiptStatisticsCollector.withItemNameDelay(delayMillis))
-                            ))
+    private static void aggregateOnRails(
+            Flowable<Receipt> receiptFlowable,
+            ReceiptStatisticsCollector collector,
+            int totalReceipts,
+            int rails,
+            int prefetch) {
+        System.out.println("Параллельные рельсы: " + rails + ", prefetch " + prefetch);
+        long started = System.nanoTime();
+        try {
+            ReceiptStatistics stats = ReceiptStatisticsParallelFlowableAggregator
+                    .aggregate(receiptFlowable, collector, rails, prefetch, Schedulers.computation())
                     .blockingGet();
+            double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+            printStatistics(stats);
+            System.out.printf("Скорость: %.0f чеков/с%n", totalReceipts / seconds);
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка в потоке данных: " + e.getMessage());
+            e.printStackTrace();
         }
+    }
 
-        /**
-         * Простое объединение статистики (аналог mergeStatistics из предыдущего класса).
-         */
-        private ReceiptStatistics mergeStatistics(ReceiptStatistics a, ReceiptStatistics b) {
-            if (a == null) return b;
-            if (b == null) return a;
-            ReceiptStatistics merged = new ReceiptStatistics();
-
-            merged.setTotalRevenue(a.getTotalRevenue() + b.getTotalRevenue());
-            merged.setTotalOrders(a.getTotalOrders() + b.getTotalOrders());
-            merged.setTotalItemsSold(a.getTotalItemsSold() + b.getTotalItemsSold());
-            merged.setTotalLoyaltyPoints(a.getTotalLoyaltyPoints() + b.getTotalLoyaltyPoints());
-            merged.setUniqueCustomers(a.getUniqueCustomers() + b.getUniqueCustomers());
-
-            merged.setMinReceiptAmount(Math.min(a.getMinReceiptAmount(), b.getMinReceiptAmount()));
-            merged.setMaxReceiptAmount(Math.max(a.getMaxReceiptAmount(), b.getMaxReceiptAmount()));
-
-            double totalOrders = merged.getTotalOrders();
-            merged.setAverageReceiptAmount(totalOrders > 0
-                    ? merged.getTotalRevenue() / totalOrders
-                    : 0);
-
-            return merged;
-        }
+    private static void printStatistics(ReceiptStatistics stats) {
+        System.out.println("\nПоток завершён ✅");
+        System.out.println("Всего заказов: " + stats.getTotalOrders());
+        System.out.println("Общая выручка: " + stats.getTotalRevenue());
+        System.out.println("Средний чек: " + stats.getAverageReceiptAmount());
+        System.out.println("Мин. чек: " + stats.getMinReceiptAmount());
+        System.out.println("Макс. чек: " + stats.getMaxReceiptAmount());
+        System.out.printf("Перцентили чека: p50 %.2f, p95 %.2f, p99 %.2f%n",
+                stats.getReceiptAmountPercentiles().p50(),
+                stats.getReceiptAmountPercentiles().p95(),
+                stats.getReceiptAmountPercentiles().p99());
+        System.out.println("Уникальных клиентов: " + stats.getUniqueCustomers());
     }
 }
@@ -0,0 +1,76 @@
+package lab3.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Receipt;
+import lab3.statistics.aggregators.AggregationRuntime;
+import lab3.statistics.aggregators.ReceiptStatisticsReactiveAggregator;
+import lab3.statistics.model.ReceiptStatistics;
+
+/**
+ * Repeated small-batch reactive aggregations: a fresh pool per call (the previous behaviour of
+ * {@code aggregateReactive(List, long)}) against long-lived {@link AggregationRuntime}s.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReactiveRuntimeBenchmark {
+
+    @Param({ "100", "500", "2000" })
+    private int datasetSize;
+
+    @Param({ "0" })
+    private long itemNameDelayMillis;
+
+    private final int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private List<Receipt> receipts;
+    private AggregationRuntime platformRuntime;
+    private AggregationRuntime virtualRuntime;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SimpleReceiptGenerator generator = new SimpleReceiptGenerator()
+                .withItemRange(2, 7)
+                .withPriceRange(5.0, 200.0);
+        receipts = BenchmarkDatasets.receipts("default", generator, datasetSize);
+        platformRuntime = AggregationRuntime.platform(parallelism).start();
+        virtualRuntime = AggregationRuntime.virtual(parallelism).start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        platformRuntime.close();
+        virtualRuntime.close();
+    }
+
+    @Benchmark
+    public ReceiptStatistics freshPoolPerCall() {
+        try (AggregationRuntime runtime = AggregationRuntime.platform(parallelism).start()) {
+            return ReceiptStatisticsReactiveAggregator.aggregateReactive(receipts, itemNameDelayMillis, runtime);
+        }
+    }
+
+    @Benchmark
+    public ReceiptStatistics sharedPlatformRuntime() {
+        return ReceiptStatisticsReactiveAggregator.aggregateReactive(receipts, itemNameDelayMillis, platformRuntime);
+    }
+
+    @Benchmark
+    public ReceiptStatistics sharedVirtualRuntime() {
+        return ReceiptStatisticsReactiveAggregator.aggregateReactive(receipts, itemNameDelayMillis, virtualRuntime);
+    }
+}
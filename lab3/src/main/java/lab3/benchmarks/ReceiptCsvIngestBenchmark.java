@@ -0,0 +1,99 @@
+package lab3.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.model.ReceiptStatistics;
+import lab3.storage.ReceiptCsv;
+
+/**
+ * Streaming CSV ingestion. {@code parseOnly} and {@code aggregateOnly} separate parsing from
+ * aggregation; the {@link IngestedBytes} counter reports input bytes per second next to the
+ * operation rate, i.e. the ingest throughput in B/s.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReceiptCsvIngestBenchmark {
+
+    @Param({ "50000", "250000" })
+    private int datasetSize;
+
+    private Path csv;
+    private long csvBytes;
+    private List<Receipt> receipts;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class IngestedBytes {
+        public long bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SimpleReceiptGenerator generator = new SimpleReceiptGenerator()
+                .withItemRange(2, 7)
+                .withPriceRange(5.0, 200.0);
+        receipts = BenchmarkDatasets.receipts("default", generator, datasetSize);
+        csv = BenchmarkDatasets.path("default", datasetSize).resolveSibling("default-" + datasetSize + ".csv");
+        if (!Files.isRegularFile(csv)) {
+            ReceiptCsv.write(csv, receipts);
+        }
+        csvBytes = Files.size(csv);
+    }
+
+    @Benchmark
+    public long parseOnly(IngestedBytes counter) {
+        counter.bytes += csvBytes;
+        try (Stream<Receipt> stream = ReceiptCsv.stream(csv)) {
+            return stream.count();
+        }
+    }
+
+    @Benchmark
+    public ReceiptStatistics aggregateOnly() {
+        return receipts.stream().collect(ReceiptStatisticsCollector.toStatistics());
+    }
+
+    @Benchmark
+    public ReceiptStatistics parseAndAggregate(IngestedBytes counter) {
+        counter.bytes += csvBytes;
+        try (Stream<Receipt> stream = ReceiptCsv.stream(csv)) {
+            return stream.collect(ReceiptStatisticsCollector.toStatistics());
+        }
+    }
+
+    @Benchmark
+    public ReceiptStatistics parseAndAggregateParallel(IngestedBytes counter) {
+        counter.bytes += csvBytes;
+        return ReceiptCsv.collectParallel(
+                csv, ReceiptStatisticsCollector.toStatistics(), Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public ReceiptStatistics flowable(IngestedBytes counter) {
+        counter.bytes += csvBytes;
+        ReceiptStatisticsCollector collector = ReceiptStatisticsCollector.toStatistics();
+        return ReceiptCsv.flowable(csv)
+                .collect(collector.supplier()::get, collector.accumulator()::accept)
+                .map(collector.finisher()::apply)
+                .blockingGet();
+    }
+}
@@ -0,0 +1,61 @@
+package lab3.benchmarks;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.aggregators.ReceiptStatisticsColumnarAggregator;
+import lab3.statistics.model.ReceiptStatistics;
+import lab3.storage.MappedReceiptFile;
+import lab3.storage.ReceiptDatasetStore;
+
+/**
+ * Aggregating straight from a receipt file: columnar batch versus a lazily materialising stream
+ * versus reading the whole list first. The file is opened (mapped) inside each invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReceiptFileBenchmark {
+
+    @Param({ "250000", "1000000" })
+    private int datasetSize;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SimpleReceiptGenerator generator = new SimpleReceiptGenerator()
+                .withItemRange(2, 7)
+                .withPriceRange(5.0, 200.0)
+                .withCatalogue(10_000, 50_000, 2_000, 1.0);
+        BenchmarkDatasets.receipts("file-catalogue", generator, datasetSize);
+        file = BenchmarkDatasets.path("file-catalogue", datasetSize);
+    }
+
+    @Benchmark
+    public ReceiptStatistics columnarBatch() {
+        return ReceiptStatisticsColumnarAggregator.aggregate(MappedReceiptFile.open(file).toBatch());
+    }
+
+    @Benchmark
+    public ReceiptStatistics parallelSpliterator() {
+        return MappedReceiptFile.open(file).stream(true).collect(ReceiptStatisticsCollector.toStatistics());
+    }
+
+    @Benchmark
+    public ReceiptStatistics readListThenParallelStream() {
+        return ReceiptDatasetStore.read(file).parallelStream().collect(ReceiptStatisticsCollector.toStatistics());
+    }
+}
@@ -0,0 +1,80 @@
+package lab3.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.AccumulatorMode;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.Collectors.SummationMode;
+import lab3.statistics.aggregators.ReceiptStatisticsIterateCircleAggregator;
+import lab3.statistics.aggregators.ReceiptStatisticsSpliteratorAggregator;
+import lab3.statistics.model.ReceiptStatistics;
+
+/**
+ * Cost of bit-reproducible revenue sums: {@link SummationMode#FIXED_POINT} against plain
+ * {@link SummationMode#DOUBLE} addition on the sequential loop and the parallel collectors.
+ * Run with {@code JmhRunner SummationModeBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SummationModeBenchmark {
+
+    private static final int SPLITERATOR_MIN_BATCH = 256;
+
+    @Param({ "50000", "250000" })
+    private int datasetSize;
+
+    @Param({ "DOUBLE", "FIXED_POINT" })
+    private SummationMode summationMode;
+
+    @Param({ "SINGLE_WRITER", "DICTIONARY_ENCODED" })
+    private AccumulatorMode accumulatorMode;
+
+    private List<Receipt> receipts;
+    private ReceiptStatisticsCollector collector;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SimpleReceiptGenerator generator = new SimpleReceiptGenerator()
+                .withItemRange(2, 7)
+                .withPriceRange(5.0, 200.0)
+                .withCatalogue(10_000, 50_000, 2_000, 1.0);
+        receipts = BenchmarkDatasets.receipts("catalogue-1.0", generator, datasetSize);
+        collector = ReceiptStatisticsCollector.toStatistics()
+                .withMode(accumulatorMode)
+                .withSummationMode(summationMode);
+    }
+
+    @Benchmark
+    public ReceiptStatistics iterateCircle() {
+        return ReceiptStatisticsIterateCircleAggregator.aggregate(receipts, summationMode);
+    }
+
+    @Benchmark
+    public ReceiptStatistics sequentialStream() {
+        return receipts.stream().collect(collector);
+    }
+
+    @Benchmark
+    public ReceiptStatistics parallelStream() {
+        return receipts.parallelStream().collect(collector);
+    }
+
+    @Benchmark
+    public ReceiptStatistics parallelStreamWithCustomSpliterator() {
+        return ReceiptStatisticsSpliteratorAggregator.aggregateParallel(receipts, SPLITERATOR_MIN_BATCH, collector);
+    }
+}
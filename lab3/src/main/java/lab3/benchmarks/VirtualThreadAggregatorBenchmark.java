@@ -0,0 +1,74 @@
+package lab3.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.aggregators.ReceiptStatisticsVirtualThreadAggregator;
+import lab3.statistics.model.ReceiptStatistics;
+import lab3.util.LatencyProfile;
+
+/**
+ * Latency-bound item name resolution: parallel streams against the virtual-thread fan-out with
+ * different in-flight limits, for CPU-bound ({@code busy-spin}) and I/O-bound (parking) lookups.
+ * The in-flight limit lives in {@link FanOut}, so {@link #parallelStream()} is not repeated for it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VirtualThreadAggregatorBenchmark {
+
+    @Param({ "100", "500", "2000" })
+    private int datasetSize;
+
+    @Param({ "5" })
+    private long itemNameDelayMillis;
+
+    @Param({ "busy-spin", "park", "lognormal-spikes" })
+    private String latencyProfileName;
+
+    private List<Receipt> receipts;
+    private LatencyProfile latencyProfile;
+
+    @State(Scope.Thread)
+    public static class FanOut {
+
+        @Param({ "64", "256", "1024" })
+        private int maxInFlight;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SimpleReceiptGenerator generator = new SimpleReceiptGenerator()
+                .withItemRange(2, 7)
+                .withPriceRange(5.0, 200.0);
+        receipts = BenchmarkDatasets.receipts("default", generator, datasetSize);
+        latencyProfile = LatencyProfile.named(latencyProfileName);
+    }
+
+    @Benchmark
+    public ReceiptStatistics parallelStream() {
+        return receipts.parallelStream()
+                .collect(ReceiptStatisticsCollector.withItemNameDelay(itemNameDelayMillis, latencyProfile));
+    }
+
+    @Benchmark
+    public ReceiptStatistics virtualThreads(FanOut fanOut) {
+        return ReceiptStatisticsVirtualThreadAggregator.aggregate(
+                receipts,
+                item -> item.getName(itemNameDelayMillis, latencyProfile),
+                fanOut.maxInFlight);
+    }
+}
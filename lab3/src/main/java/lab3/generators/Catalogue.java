@@ -0,0 +1,29 @@
+package lab3.generators;
+
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+/**
+ * Fixed population of keys (items, customers, locations) whose popularity follows a Zipf law:
+ * the entry created first is the most popular one.
+ */
+final class Catalogue<T> {
+
+    private final List<T> entries;
+    private final ZipfDistribution popularity;
+
+    Catalogue(int size, double zipfExponent, IntFunction<T> entryFactory) {
+        this.popularity = new ZipfDistribution(size, zipfExponent);
+        this.entries = IntStream.range(0, size).mapToObj(entryFactory).toList();
+    }
+
+    T next(RandomGenerator random) {
+        return entries.get(popularity.sample(random));
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
@@ -1,25 +1,54 @@
 package lab3.generators;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.SplittableRandom;
 import java.util.concurrent.ThreadLocalRandom;
-
-import org.apache.commons.lang3.RandomStringUtils;
-import org.apache.commons.lang3.RandomUtils;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
 
 import lab3.model.Customer;
 import lab3.model.Item;
+import lab3.model.Money;
 import lab3.model.Receipt;
 import lab3.model.ReceiptStatus;
 import lab3.model.ShippingAddress;
+import lab3.statistics.columnar.ReceiptBatch;
 
+/**
+ * Random receipt generator. Every random choice goes through an explicit {@link RandomGenerator}:
+ * unseeded calls use {@link ThreadLocalRandom}, seeded calls a {@link SplittableRandom}, so a seed
+ * fully determines the generated data (together with the configured ranges, catalogues and the
+ * date window end).
+ */
 public class SimpleReceiptGenerator {
 
+    /**
+     * Receipts generated from one split of the seeded random; the split sequence depends only on the
+     * seed and the count, which keeps parallel generation independent of the thread count.
+     */
+    private static final int GENERATION_CHUNK = 4096;
+    private static final long CATALOGUE_SEED = 0x5EED_CA7AL;
+
+    private static final char[] ALPHABETIC =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final char[] ALPHANUMERIC =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final char[] NUMERIC = "0123456789".toCharArray();
+    private static final ReceiptStatus[] STATUSES = ReceiptStatus.values();
+
     private int minItems = 1;
     private int maxItems = 5;
     private double minPrice = 1.0;
     private double maxPrice = 500.0;
+    private boolean minorUnitPrices;
+    private LocalDateTime dateWindowEnd;
+    private Catalogue<String> itemCatalogue;
+    private Catalogue<CustomerName> customerCatalogue;
+    private Catalogue<Location> locationCatalogue;
 
     public SimpleReceiptGenerator withItemRange(int min, int max) {
         this.minItems = min;
@@ -33,14 +62,193 @@ public class SimpleReceiptGenerator {
         return this;
     }
 
+    /**
+     * Prices are drawn as whole minor units (cents) within the price range, so {@link Item#getUnitPrice()}
+     * and {@link Item#getUnitPriceMinor()} describe the same amount exactly.
+     */
+    public SimpleReceiptGenerator withMinorUnitPrices() {
+        this.minorUnitPrices = true;
+        return this;
+    }
+
+    /**
+     * Receipts are dated within the 365 days before {@code end}; by default before the moment of
+     * generation. Fixing it makes seeded datasets reproducible across days.
+     */
+    public SimpleReceiptGenerator withDateWindowEnd(LocalDateTime end) {
+        this.dateWindowEnd = end;
+        return this;
+    }
+
+    /**
+     * Draws item names from a fixed catalogue of {@code size} names instead of random ones; item
+     * popularity follows a Zipf law with the given exponent (0 means uniform).
+     */
+    public SimpleReceiptGenerator withItemCatalogue(int size, double zipfExponent) {
+        this.itemCatalogue = new Catalogue<>(size, zipfExponent, i -> String.format("Item-%05d", i));
+        return this;
+    }
+
+    /**
+     * Draws customers from a fixed population of {@code size} first/last name pairs with Zipf
+     * popularity, so repeat customers and heavy buyers appear as they do in production.
+     */
+    public SimpleReceiptGenerator withCustomerCatalogue(int size, double zipfExponent) {
+        SplittableRandom random = new SplittableRandom(CATALOGUE_SEED + size);
+        this.customerCatalogue = new Catalogue<>(size, zipfExponent, i -> new CustomerName(
+                randomString(random, ALPHABETIC, 5, 10),
+                randomString(random, ALPHABETIC, 5, 12)));
+        return this;
+    }
+
+    /**
+     * Draws shipping cities from a fixed population of {@code size} cities with Zipf popularity.
+     * Cities are spread over {@code max(1, size / 8)} states.
+     */
+    public SimpleReceiptGenerator withCityCatalogue(int size, double zipfExponent) {
+        SplittableRandom random = new SplittableRandom(CATALOGUE_SEED - size);
+        List<String> states = IntStream.range(0, Math.max(1, size / 8))
+                .mapToObj(i -> randomString(random, ALPHABETIC, 2, 5))
+                .toList();
+        this.locationCatalogue = new Catalogue<>(size, zipfExponent, i -> new Location(
+                randomString(random, ALPHABETIC, 5, 10),
+                states.get(random.nextInt(states.size()))));
+        return this;
+    }
+
+    /**
+     * Shorthand for a skewed catalogue of items, customers and cities sharing one Zipf exponent.
+     */
+    public SimpleReceiptGenerator withCatalogue(int items, int customers, int cities, double zipfExponent) {
+        return withItemCatalogue(items, zipfExponent)
+                .withCustomerCatalogue(customers, zipfExponent)
+                .withCityCatalogue(cities, zipfExponent);
+    }
+
     public Receipt generateOne() {
+        return generateOne(ThreadLocalRandom.current(), dateWindow());
+    }
+
+    public List<Receipt> generateMany(int count) {
+        return generateMany(count, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Generates receipts in parallel. The result depends only on the seed (and the generator
+     * configuration), not on the number of threads: the seeded random is split once per chunk of
+     * {@value #GENERATION_CHUNK} receipts up front, and each chunk is filled from its own split.
+     */
+    public List<Receipt> generateMany(int count, long seed) {
+        Receipt[] receipts = new Receipt[count];
+        SplittableRandom[] chunkRandoms = chunkRandoms(count, seed);
+        DateWindow window = dateWindow();
+        IntStream.range(0, chunkRandoms.length).parallel().forEach(chunk -> {
+            SplittableRandom random = chunkRandoms[chunk];
+            int end = Math.min(count, (chunk + 1) * GENERATION_CHUNK);
+            for (int i = chunk * GENERATION_CHUNK; i < end; i++) {
+                receipts[i] = generateOne(random, window);
+            }
+        });
+        return new ArrayList<>(Arrays.asList(receipts));
+    }
+
+    /**
+     * Generates receipts straight into the columnar {@link ReceiptBatch} layout without materialising
+     * {@link Receipt}, {@link Item} and {@link Customer} objects.
+     */
+    public ReceiptBatch generateBatch(int count) {
+        return generateBatch(count, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Columnar counterpart of {@link #generateMany(int, long)}: the chunks are generated in parallel
+     * from the same splits with the same draws, so the batch holds the same receipts (and the same
+     * dictionary ids) as {@code ReceiptBatch.from(generateMany(count, seed))}.
+     */
+    public ReceiptBatch generateBatch(int count, long seed) {
+        SplittableRandom[] chunkRandoms = chunkRandoms(count, seed);
+        ReceiptBatch[] chunks = new ReceiptBatch[chunkRandoms.length];
+        DateWindow window = dateWindow();
+        IntStream.range(0, chunkRandoms.length).parallel().forEach(chunk -> {
+            SplittableRandom random = chunkRandoms[chunk];
+            int end = Math.min(count, (chunk + 1) * GENERATION_CHUNK);
+            ReceiptBatch.Builder builder = ReceiptBatch.builder(end - chunk * GENERATION_CHUNK);
+            ItemLines lines = new ItemLines(maxItems);
+            for (int i = chunk * GENERATION_CHUNK; i < end; i++) {
+                generateInto(builder, lines, random, window);
+            }
+            chunks[chunk] = builder.build();
+        });
+        // словари кодируются последовательно в порядке чеков, как в ReceiptBatch.from
+        ReceiptBatch.Builder builder = ReceiptBatch.builder(count);
+        for (ReceiptBatch chunk : chunks) {
+            builder.addBatch(chunk);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Appends one receipt to {@code builder}, drawing from {@code random} exactly like
+     * {@link #generateOne(RandomGenerator, DateWindow)}; the draws for fields the batch does not
+     * keep (id, street, zip) are skipped without building the strings. {@code lines} is scratch space.
+     */
+    private void generateInto(
+            ReceiptBatch.Builder builder,
+            ItemLines lines,
+            RandomGenerator random,
+            DateWindow window) {
+        skipString(random, ALPHANUMERIC, 10, 11);
+        int month = window.random(random).getMonthValue();
+        ReceiptStatus status = randomStatus(random);
+        CustomerName customer = randomCustomerName(random);
+        // randomAddress: сначала город и штат, затем улица, квартира и индекс
+        Location location = randomLocation(random);
+        skipString(random, ALPHABETIC, 10, 20);
+        skipString(random, ALPHABETIC, 5, 15);
+        skipString(random, NUMERIC, 5, 6);
+
+        int itemCount = random.nextInt(minItems, maxItems + 1);
+        String[] names = lines.names;
+        int[] quantities = lines.quantities;
+        long[] pricesMinor = lines.pricesMinor;
+        double[] prices = lines.prices;
+        double[] lineAmounts = lines.lineAmounts;
+        for (int j = 0; j < itemCount; j++) {
+            names[j] = randomItemName(random);
+            quantities[j] = random.nextInt(1, 5);
+            // как Item.setUnitPriceMinor / Item.setUnitPrice
+            if (minorUnitPrices) {
+                pricesMinor[j] = randomPriceMinor(random);
+                prices[j] = Money.toMajor(pricesMinor[j]);
+            } else {
+                prices[j] = randomPrice(random);
+                pricesMinor[j] = Money.toMinor(prices[j]);
+            }
+            lineAmounts[j] = prices[j] * quantities[j];
+        }
+
+        // та же формула (и то же суммирование DoubleStream), что и в generateOne
+        int points = (int) Arrays.stream(lineAmounts, 0, itemCount).sum() / 10;
+        builder.beginReceipt(
+                status,
+                month,
+                points,
+                customer.firstName() + " " + customer.lastName(),
+                location.city(),
+                location.state());
+        for (int j = 0; j < itemCount; j++) {
+            builder.addItem(names[j], quantities[j], prices[j], pricesMinor[j]);
+        }
+    }
+
+    private Receipt generateOne(RandomGenerator random, DateWindow window) {
         Receipt receipt = new Receipt();
-        receipt.setId(RandomStringUtils.randomAlphanumeric(10));
-        receipt.setDate(randomDateTime());
-        receipt.setStatus(randomEnum(ReceiptStatus.class));
-        receipt.setCustomer(randomCustomer());
-        receipt.setShippingAddress(randomAddress());
-        receipt.setItems(randomItems());
+        receipt.setId(randomString(random, ALPHANUMERIC, 10, 11));
+        receipt.setDate(window.random(random));
+        receipt.setStatus(randomStatus(random));
+        receipt.setCustomer(randomCustomer(random));
+        receipt.setShippingAddress(randomAddress(random));
+        receipt.setItems(randomItems(random));
 
         // loyalty points считаем, например, как сумма цен/10
         int points = (int) receipt.getItems().stream()
@@ -51,53 +259,151 @@ public class SimpleReceiptGenerator {
         return receipt;
     }
 
-    public List<Receipt> generateMany(int count) {
-        List<Receipt> receipts = new ArrayList<>();
-        for (int i = 0; i < count; i++) {
-            receipts.add(generateOne());
+    private static SplittableRandom[] chunkRandoms(int count, long seed) {
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[(count + GENERATION_CHUNK - 1) / GENERATION_CHUNK];
+        for (int chunk = 0; chunk < randoms.length; chunk++) {
+            randoms[chunk] = root.split();
         }
-        return receipts;
+        return randoms;
     }
 
-    private Customer randomCustomer() {
+    private Customer randomCustomer(RandomGenerator random) {
+        CustomerName name = randomCustomerName(random);
         Customer c = new Customer();
-        c.setFirstName(RandomStringUtils.randomAlphabetic(5, 10));
-        c.setLastName(RandomStringUtils.randomAlphabetic(5, 12));
+        c.setFirstName(name.firstName());
+        c.setLastName(name.lastName());
         return c;
     }
 
-    private ShippingAddress randomAddress() {
+    private CustomerName randomCustomerName(RandomGenerator random) {
+        if (customerCatalogue != null) {
+            return customerCatalogue.next(random);
+        }
+        return new CustomerName(randomString(random, ALPHABETIC, 5, 10), randomString(random, ALPHABETIC, 5, 12));
+    }
+
+    private ShippingAddress randomAddress(RandomGenerator random) {
+        Location location = randomLocation(random);
         return new ShippingAddress(
-                RandomStringUtils.randomAlphabetic(10, 20) + " St.",
-                RandomStringUtils.randomAlphabetic(5, 15) + " Apt.",
-                RandomStringUtils.randomAlphabetic(5, 10),
-                RandomStringUtils.randomAlphabetic(2, 5),
-                RandomStringUtils.randomNumeric(5),
+                randomString(random, ALPHABETIC, 10, 20) + " St.",
+                randomString(random, ALPHABETIC, 5, 15) + " Apt.",
+                location.city(),
+                location.state(),
+                randomString(random, NUMERIC, 5, 6),
                 "Utopia");
     }
 
-    private List<Item> randomItems() {
-        int count = RandomUtils.nextInt(minItems, maxItems + 1);
-        List<Item> items = new ArrayList<>();
+    private Location randomLocation(RandomGenerator random) {
+        if (locationCatalogue != null) {
+            return locationCatalogue.next(random);
+        }
+        return new Location(randomString(random, ALPHABETIC, 5, 10), randomString(random, ALPHABETIC, 2, 5));
+    }
+
+    private List<Item> randomItems(RandomGenerator random) {
+        int count = random.nextInt(minItems, maxItems + 1);
+        List<Item> items = new ArrayList<>(count);
         for (int i = 0; i < count; i++) {
             Item item = new Item();
-            item.setName("Item-" + RandomStringUtils.randomAlphanumeric(4));
-            item.setQuantity(RandomUtils.nextInt(1, 5));
-            item.setUnitPrice(RandomUtils.nextDouble(minPrice, maxPrice));
+            item.setName(randomItemName(random));
+            item.setQuantity(random.nextInt(1, 5));
+            if (minorUnitPrices) {
+                item.setUnitPriceMinor(randomPriceMinor(random));
+            } else {
+                item.setUnitPrice(randomPrice(random));
+            }
             items.add(item);
         }
         return items;
     }
 
-    private LocalDateTime randomDateTime() {
-        long minDay = LocalDateTime.now().minusDays(365).toEpochSecond(java.time.ZoneOffset.UTC);
-        long maxDay = LocalDateTime.now().toEpochSecond(java.time.ZoneOffset.UTC);
-        long randomEpoch = ThreadLocalRandom.current().nextLong(minDay, maxDay);
-        return LocalDateTime.ofEpochSecond(randomEpoch, 0, java.time.ZoneOffset.UTC);
+    private String randomItemName(RandomGenerator random) {
+        if (itemCatalogue != null) {
+            return itemCatalogue.next(random);
+        }
+        return "Item-" + randomString(random, ALPHANUMERIC, 4, 5);
+    }
+
+    private double randomPrice(RandomGenerator random) {
+        if (minorUnitPrices) {
+            return Money.toMajor(randomPriceMinor(random));
+        }
+        return minPrice < maxPrice ? random.nextDouble(minPrice, maxPrice) : minPrice;
+    }
+
+    private long randomPriceMinor(RandomGenerator random) {
+        long min = Money.toMinor(minPrice);
+        long max = Money.toMinor(maxPrice);
+        return min < max ? random.nextLong(min, max) : min;
+    }
+
+    private DateWindow dateWindow() {
+        LocalDateTime end = dateWindowEnd != null ? dateWindowEnd : LocalDateTime.now();
+        return new DateWindow(
+                end.minusDays(365).toEpochSecond(ZoneOffset.UTC),
+                end.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    private static ReceiptStatus randomStatus(RandomGenerator random) {
+        return STATUSES[random.nextInt(STATUSES.length)];
+    }
+
+    /**
+     * Random string with a length in {@code [minLength, maxLengthExclusive)}, like
+     * {@code RandomStringUtils.randomAlphabetic(min, max)} but driven by the given generator.
+     */
+    private static String randomString(RandomGenerator random, char[] alphabet, int minLength, int maxLengthExclusive) {
+        char[] chars = new char[random.nextInt(minLength, maxLengthExclusive)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Makes the same draws as {@link #randomString} without building the string.
+     */
+    private static void skipString(RandomGenerator random, char[] alphabet, int minLength, int maxLengthExclusive) {
+        int length = random.nextInt(minLength, maxLengthExclusive);
+        for (int i = 0; i < length; i++) {
+            random.nextInt(alphabet.length);
+        }
+    }
+
+    /**
+     * Epoch-second bounds of the receipt dates, computed once per generation call.
+     */
+    private record DateWindow(long minEpochSecond, long maxEpochSecond) {
+
+        LocalDateTime random(RandomGenerator random) {
+            long epochSecond = random.nextLong(minEpochSecond, maxEpochSecond);
+            return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+        }
+    }
+
+    private record CustomerName(String firstName, String lastName) {
+    }
+
+    /**
+     * Item columns of the receipt being generated by {@code generateBatch}, sized for the largest receipt.
+     */
+    private static final class ItemLines {
+        final String[] names;
+        final int[] quantities;
+        final long[] pricesMinor;
+        final double[] prices;
+        final double[] lineAmounts;
+
+        ItemLines(int maxItems) {
+            names = new String[maxItems];
+            quantities = new int[maxItems];
+            pricesMinor = new long[maxItems];
+            prices = new double[maxItems];
+            lineAmounts = new double[maxItems];
+        }
     }
 
-    private <T extends Enum<?>> T randomEnum(Class<T> clazz) {
-        T[] values = clazz.getEnumConstants();
-        return values[RandomUtils.nextInt(0, values.length)];
+    private record Location(String city, String state) {
     }
 }
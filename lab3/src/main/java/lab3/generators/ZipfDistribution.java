@@ -0,0 +1,44 @@
+package lab3.generators;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Zipf (power-law) distribution over ranks {@code 0..size-1}: rank {@code k} is drawn with
+ * probability proportional to {@code 1 / (k + 1)^exponent}. Exponent 0 is uniform, around 1 matches
+ * typical catalogue popularity. Sampling is a binary search over the precomputed CDF.
+ */
+final class ZipfDistribution {
+
+    private final double[] cumulative;
+
+    ZipfDistribution(int size, double exponent) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("exponent must not be negative: " + exponent);
+        }
+        cumulative = new double[size];
+        double sum = 0.0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    int size() {
+        return cumulative.length;
+    }
+
+    int sample(RandomGenerator random) {
+        double u = random.nextDouble();
+        int index = Arrays.binarySearch(cumulative, u);
+        // без точного совпадения binarySearch возвращает -(точка вставки) - 1
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+}
@@ -2,7 +2,7 @@ package lab3.model;
 
 import lombok.Getter;
 import lombok.Setter;
-import lab3.util.LatencySimulator;
+import lab3.util.LatencyProfile;
 
 @Getter
 @Setter
@@ -10,6 +10,21 @@ public class Item {
     private String name;
     private int quantity;
     private double unitPrice;
+    // та же цена в минимальных единицах (центах); всегда согласована с unitPrice
+    private long unitPriceMinor;
+
+    public void setUnitPrice(double unitPrice) {
+        this.unitPrice = unitPrice;
+        this.unitPriceMinor = Money.toMinor(unitPrice);
+    }
+
+    /**
+     * Sets the price in minor units (cents); {@link #getUnitPrice()} becomes the same amount in major units.
+     */
+    public void setUnitPriceMinor(long unitPriceMinor) {
+        this.unitPriceMinor = unitPriceMinor;
+        this.unitPrice = Money.toMajor(unitPriceMinor);
+    }
 
     /**
      * Returns the item name after waiting for the requested artificial delay.
@@ -19,9 +34,32 @@ public class Item {
      * @return item name
      */
     public String getName(long delayMillis) {
+        return getName(delayMillis, LatencyProfile.busySpin());
+    }
+
+    /**
+     * Returns the item name after spending the delay with the given latency profile, so that
+     * benchmarks can tell CPU-bound lookups from I/O-bound ones.
+     *
+     * @param delayMillis delay in milliseconds; non-positive values are ignored
+     * @param latencyProfile how the delay is spent
+     * @return item name
+     */
+    public String getName(long delayMillis, LatencyProfile latencyProfile) {
         if (delayMillis > 0) {
-            LatencySimulator.emulateWork(delayMillis);
+            latencyProfile.emulate(delayMillis);
         }
         return name;
     }
+
+    /**
+     * Blocking variant of {@link #getName(long)}: the delay is spent parked rather than spinning,
+     * modelling a remote catalogue lookup that waits on I/O.
+     *
+     * @param delayMillis delay in milliseconds; non-positive values are ignored
+     * @return item name
+     */
+    public String awaitName(long delayMillis) {
+        return getName(delayMillis, LatencyProfile.parking());
+    }
 }
@@ -0,0 +1,37 @@
+package lab3.model;
+
+/**
+ * Conversions between amounts in major units ({@code double}, e.g. {@code 12.34}) and minor units
+ * ({@code long} cents, e.g. {@code 1234}). Sums and products of minor units are exact and
+ * associative, so aggregates kept in minor units do not depend on summation order; they are
+ * converted to major units once, when the result is reported.
+ */
+public final class Money {
+
+    public static final int MINOR_UNITS_PER_MAJOR = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Nearest whole number of minor units; exact for amounts that are whole cents.
+     */
+    public static long toMinor(double major) {
+        return Math.round(major * MINOR_UNITS_PER_MAJOR);
+    }
+
+    /**
+     * Nearest {@code double} to the amount in major units.
+     */
+    public static double toMajor(long minor) {
+        return minor / (double) MINOR_UNITS_PER_MAJOR;
+    }
+
+    public static double[] toMajor(long[] minor) {
+        double[] major = new double[minor.length];
+        for (int i = 0; i < minor.length; i++) {
+            major[i] = toMajor(minor[i]);
+        }
+        return major;
+    }
+}
@@ -0,0 +1,23 @@
+package lab3.statistics.Collectors;
+
+/**
+ * Storage strategy of the accumulators created by {@link ReceiptStatisticsCollector}.
+ */
+public enum AccumulatorMode {
+    /**
+     * Plain {@code HashMap}/{@code EnumMap}/array state; relies on the collector contract that an
+     * accumulator is only written by one thread at a time. This is the default.
+     */
+    SINGLE_WRITER,
+    /**
+     * One accumulator shared by all writer threads: keyed metrics are kept in {@code ConcurrentHashMap}s
+     * keyed by the original strings, scalar totals in striped adders and the receipt amount sketches in
+     * per-thread stripes, so writers take no common lock. The collector is then a
+     * {@code CONCURRENT} collector, and its accumulators may also be fed directly by several producers.
+     */
+    CONCURRENT,
+    /**
+     * Keys are interned into dense ids once and metrics are kept in id-indexed primitive arrays.
+     */
+    DICTIONARY_ENCODED
+}
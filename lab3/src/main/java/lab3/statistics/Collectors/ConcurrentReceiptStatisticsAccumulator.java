@@ -0,0 +1,353 @@
+package lab3.statistics.Collectors;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import lab3.model.Item;
+import lab3.model.Money;
+import lab3.model.Receipt;
+import lab3.model.ReceiptStatus;
+import lab3.statistics.model.CardinalityMode;
+import lab3.statistics.model.ItemAverageReceiptMetrics;
+import lab3.statistics.model.PriceTier;
+import lab3.statistics.model.ReceiptAmountDistribution;
+import lab3.statistics.model.ReceiptStatistics;
+import lab3.statistics.model.TopLimits;
+import lab3.statistics.model.TopMetrics;
+import lab3.statistics.model.TopSketches;
+
+/**
+ * Accumulator that may be shared by any number of writer threads: keyed metrics live in concurrent
+ * maps, scalar totals in {@link LongAdder}/{@link DoubleAdder}, and the minimum and maximum receipt
+ * are updated lock-free with compare-and-set in cache-line padded cells, so concurrent {@link #add}
+ * calls neither lose updates nor contend on a shared line. Per-item receipt totals are kept in
+ * concurrent maps as well, and the receipt amount distribution, whose sketches are not thread-safe,
+ * is striped by writer thread and merged when the statistics are built, so no {@code add} takes a
+ * monitor shared by all writers. In approximate cardinality mode the per-customer maps are left
+ * empty and each stripe also holds {@link CustomerSketches}, guarded by the same monitor.
+ * {@link #combine} and {@link #toStatistics} expect the writers to be done.
+ */
+public final class ConcurrentReceiptStatisticsAccumulator extends ReceiptStatisticsAccumulator {
+
+    private static final int MAX_STRIPES = 64;
+
+    final LongAdder totalOrders = new LongAdder();
+    final DoubleAdder totalRevenue = new DoubleAdder();
+    // в MINOR_UNITS общая выручка копится в long-центах
+    final LongAdder totalRevenueMinor = new LongAdder();
+    final PaddedDouble minReceipt = new PaddedDouble(Double.POSITIVE_INFINITY);
+    final PaddedDouble maxReceipt = new PaddedDouble(Double.NEGATIVE_INFINITY);
+
+    final LongAdder totalItemsSold = new LongAdder();
+    final LongAdder totalLoyaltyPoints = new LongAdder();
+
+    Map<ReceiptStatus, Long> ordersByStatus = new ConcurrentHashMap<>();
+    Map<Integer, Double> revenueByMonth = new ConcurrentHashMap<>();
+    Map<String, Double> revenueByCustomer = new ConcurrentHashMap<>();
+    Map<String, Long> ordersByCustomer = new ConcurrentHashMap<>();
+    Map<String, Long> itemQuantityByName = new ConcurrentHashMap<>();
+    Map<String, Double> itemRevenueByName = new ConcurrentHashMap<>();
+    Map<String, Double> revenueByCity = new ConcurrentHashMap<>();
+    Map<String, Long> ordersByCity = new ConcurrentHashMap<>();
+    Map<ReceiptStatus, Double> revenueByStatus = new ConcurrentHashMap<>();
+    Map<PriceTier, Long> quantityByPriceTier = new ConcurrentHashMap<>();
+    Map<PriceTier, Double> revenueByPriceTier = new ConcurrentHashMap<>();
+    Map<String, Double> revenueByState = new ConcurrentHashMap<>();
+    Map<String, Long> ordersByState = new ConcurrentHashMap<>();
+    Map<String, Long> itemReceiptCount = new ConcurrentHashMap<>();
+    Map<String, Double> itemReceiptTotal = new ConcurrentHashMap<>();
+    final ReceiptAmountDistribution[] receiptAmountStripes = newStripes();
+    // null, если клиенты считаются точно; полоса i защищена монитором receiptAmountStripes[i]
+    final CustomerSketches[] customerSketchStripes;
+
+    public ConcurrentReceiptStatisticsAccumulator() {
+        this(0L);
+    }
+
+    public ConcurrentReceiptStatisticsAccumulator(long itemNameDelayMillis) {
+        this(delayedItemNameResolver(itemNameDelayMillis));
+    }
+
+    public ConcurrentReceiptStatisticsAccumulator(Function<Item, String> itemNameResolver) {
+        this(itemNameResolver, TopLimits.defaults());
+    }
+
+    public ConcurrentReceiptStatisticsAccumulator(Function<Item, String> itemNameResolver, TopLimits topLimits) {
+        this(itemNameResolver, topLimits, CardinalityMode.exact());
+    }
+
+    public ConcurrentReceiptStatisticsAccumulator(
+            Function<Item, String> itemNameResolver,
+            TopLimits topLimits,
+            CardinalityMode cardinalityMode) {
+        this(itemNameResolver, topLimits, cardinalityMode, SummationMode.DOUBLE);
+    }
+
+    public ConcurrentReceiptStatisticsAccumulator(
+            Function<Item, String> itemNameResolver,
+            TopLimits topLimits,
+            CardinalityMode cardinalityMode,
+            SummationMode summationMode) {
+        super(itemNameResolver, topLimits, cardinalityMode, summationMode);
+        if (cardinalityMode.approximate()) {
+            customerSketchStripes = new CustomerSketches[receiptAmountStripes.length];
+            for (int i = 0; i < customerSketchStripes.length; i++) {
+                customerSketchStripes[i] = CustomerSketches.forMode(cardinalityMode, topLimits);
+            }
+        } else {
+            customerSketchStripes = null;
+        }
+    }
+
+    @Override
+    void add(Receipt r) {
+        totalOrders.increment();
+
+        double orderTotal = 0;
+        long orderTotalMinor = 0;
+        long itemsInOrder = 0;
+        Set<String> itemsInReceipt = new HashSet<>();
+        for (Item item : r.getItems()) {
+            String itemName = resolveItemName(item);
+            double itemRevenue = lineRevenue(item);
+            orderTotal += itemRevenue;
+            orderTotalMinor += item.getUnitPriceMinor() * item.getQuantity();
+            itemsInOrder += item.getQuantity();
+            itemQuantityByName.merge(itemName, (long) item.getQuantity(), Long::sum);
+            itemRevenueByName.merge(itemName, itemRevenue, Double::sum);
+            itemsInReceipt.add(itemName);
+
+            PriceTier tier = PriceTier.fromUnitPrice(item.getUnitPrice());
+            quantityByPriceTier.merge(tier, (long) item.getQuantity(), Long::sum);
+            revenueByPriceTier.merge(tier, itemRevenue, Double::sum);
+        }
+
+        for (String itemName : itemsInReceipt) {
+            itemReceiptCount.merge(itemName, 1L, Long::sum);
+            itemReceiptTotal.merge(itemName, orderTotal, Double::sum);
+        }
+        String customerKey = r.getCustomer().getFirstName() + " " + r.getCustomer().getLastName();
+        // скетчи не потокобезопасны: каждый поток пишет в свою полосу, общий монитор не нужен
+        int stripeIndex = stripeIndex();
+        ReceiptAmountDistribution stripe = receiptAmountStripes[stripeIndex];
+        synchronized (stripe) {
+            stripe.add(r.getStatus(), r.getShippingAddress().state(), toMajor(orderTotal));
+            if (customerSketchStripes != null) {
+                customerSketchStripes[stripeIndex].add(customerKey, toMajor(orderTotal));
+            }
+        }
+
+        if (summationMode() == SummationMode.MINOR_UNITS) {
+            totalRevenueMinor.add(orderTotalMinor);
+        } else {
+            totalRevenue.add(orderTotal);
+        }
+        minReceipt.accumulateMin(orderTotal);
+        maxReceipt.accumulateMax(orderTotal);
+
+        totalItemsSold.add(itemsInOrder);
+
+        totalLoyaltyPoints.add(r.getLoyaltyPointsEarned());
+
+        ordersByStatus.merge(r.getStatus(), 1L, Long::sum);
+        revenueByStatus.merge(r.getStatus(), orderTotal, Double::sum);
+
+        revenueByMonth.merge(r.getDate().getMonthValue(), orderTotal, Double::sum);
+
+        if (customerSketchStripes == null) {
+            revenueByCustomer.merge(customerKey, orderTotal, Double::sum);
+            ordersByCustomer.merge(customerKey, 1L, Long::sum);
+        }
+
+        String city = r.getShippingAddress().city();
+        revenueByCity.merge(city, orderTotal, Double::sum);
+        ordersByCity.merge(city, 1L, Long::sum);
+
+        String state = r.getShippingAddress().state();
+        revenueByState.merge(state, orderTotal, Double::sum);
+        ordersByState.merge(state, 1L, Long::sum);
+    }
+
+    @Override
+    ReceiptStatisticsAccumulator combine(ReceiptStatisticsAccumulator accumulator) {
+        ConcurrentReceiptStatisticsAccumulator other = (ConcurrentReceiptStatisticsAccumulator) accumulator;
+        totalOrders.add(other.totalOrders.sum());
+        totalRevenue.add(other.totalRevenue.sum());
+        totalRevenueMinor.add(other.totalRevenueMinor.sum());
+        minReceipt.accumulateMin(other.minReceipt.get());
+        maxReceipt.accumulateMax(other.maxReceipt.get());
+
+        totalItemsSold.add(other.totalItemsSold.sum());
+        totalLoyaltyPoints.add(other.totalLoyaltyPoints.sum());
+
+        other.ordersByStatus.forEach((k, v) -> ordersByStatus.merge(k, v, Long::sum));
+
+        other.revenueByMonth.forEach((k, v) -> revenueByMonth.merge(k, v, Double::sum));
+
+        other.revenueByCustomer.forEach((k, v) -> revenueByCustomer.merge(k, v, Double::sum));
+        other.ordersByCustomer.forEach((k, v) -> ordersByCustomer.merge(k, v, Long::sum));
+        other.itemQuantityByName.forEach((k, v) -> itemQuantityByName.merge(k, v, Long::sum));
+        other.itemRevenueByName.forEach((k, v) -> itemRevenueByName.merge(k, v, Double::sum));
+        other.revenueByCity.forEach((k, v) -> revenueByCity.merge(k, v, Double::sum));
+        other.ordersByCity.forEach((k, v) -> ordersByCity.merge(k, v, Long::sum));
+        other.revenueByStatus.forEach((k, v) -> revenueByStatus.merge(k, v, Double::sum));
+        other.quantityByPriceTier.forEach((k, v) -> quantityByPriceTier.merge(k, v, Long::sum));
+        other.revenueByPriceTier.forEach((k, v) -> revenueByPriceTier.merge(k, v, Double::sum));
+        other.revenueByState.forEach((k, v) -> revenueByState.merge(k, v, Double::sum));
+        other.ordersByState.forEach((k, v) -> ordersByState.merge(k, v, Long::sum));
+        other.itemReceiptCount.forEach((k, v) -> itemReceiptCount.merge(k, v, Long::sum));
+        other.itemReceiptTotal.forEach((k, v) -> itemReceiptTotal.merge(k, v, Double::sum));
+        for (int i = 0; i < receiptAmountStripes.length; i++) {
+            receiptAmountStripes[i].merge(other.receiptAmountStripes[i]);
+            if (customerSketchStripes != null) {
+                customerSketchStripes[i].merge(other.customerSketchStripes[i]);
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    ReceiptStatistics toStatistics() {
+        TopLimits limits = topLimits();
+        long orders = totalOrders.sum();
+        double revenue = summationMode() == SummationMode.MINOR_UNITS
+                ? Money.toMajor(totalRevenueMinor.sum())
+                : totalRevenue.sum();
+        ReceiptStatistics stats = new ReceiptStatistics();
+        stats.setTotalOrders(orders);
+        stats.setTotalRevenue(revenue);
+        stats.setAverageReceiptAmount(orders > 0 ? revenue / orders : 0);
+        stats.setMinReceiptAmount(orders > 0 ? toMajor(minReceipt.get()) : 0);
+        stats.setMaxReceiptAmount(orders > 0 ? toMajor(maxReceipt.get()) : 0);
+        ReceiptAmountDistribution receiptAmounts = new ReceiptAmountDistribution();
+        for (ReceiptAmountDistribution stripe : receiptAmountStripes) {
+            receiptAmounts.merge(stripe);
+        }
+        receiptAmounts.applyTo(stats);
+
+        stats.setOrdersByStatus(ordersByStatus);
+        stats.setTotalItemsSold(totalItemsSold.sum());
+
+        CustomerSketches sketches = null;
+        if (customerSketchStripes != null) {
+            sketches = customerSketchStripes[0].copy();
+            for (int i = 1; i < customerSketchStripes.length; i++) {
+                sketches.merge(customerSketchStripes[i]);
+            }
+            cardinalityMode().applyTo(stats, sketches.customers());
+        } else {
+            // отдельное множество клиентов не нужно: ключи ordersByCustomer и есть клиенты
+            cardinalityMode().applyTo(stats, ordersByCustomer.keySet());
+        }
+
+        stats.setTotalLoyaltyPoints(totalLoyaltyPoints.sum());
+        stats.setRevenueByMonth(toMajor(revenueByMonth));
+        String[] itemNames = itemReceiptCount.keySet().toArray(String[]::new);
+        long[] receiptCounts = new long[itemNames.length];
+        double[] receiptTotals = new double[itemNames.length];
+        for (int id = 0; id < itemNames.length; id++) {
+            receiptCounts[id] = itemReceiptCount.get(itemNames[id]);
+            receiptTotals[id] = itemReceiptTotal.get(itemNames[id]);
+        }
+        stats.setItemAverageReceipts(
+                ItemAverageReceiptMetrics.fromTotals(itemNames, receiptCounts, receiptTotals, this::toMajor));
+        stats.setRevenueByStatusRanking(TopMetrics.calculateStatusRevenue(toMajor(revenueByStatus), ordersByStatus));
+        stats.setSalesByPriceTier(TopMetrics.calculatePriceTierSales(quantityByPriceTier, toMajor(revenueByPriceTier)));
+
+        Map<String, Double> revenueByCustomerMajor = toMajor(revenueByCustomer);
+        int capacity = TopSketches.capacityFor(limits);
+        new TopSketches(
+                sketches != null
+                        ? sketches.bySpending()
+                        : TopMetrics.sketch(revenueByCustomerMajor, Map.of(), capacity),
+                sketches != null
+                        ? sketches.byOrders()
+                        : TopMetrics.sketch(ordersByCustomer, revenueByCustomerMajor, capacity),
+                TopMetrics.sketch(itemQuantityByName, toMajor(itemRevenueByName), capacity),
+                TopMetrics.sketch(toMajor(revenueByCity), ordersByCity, capacity),
+                TopMetrics.sketch(toMajor(revenueByState), ordersByState, capacity))
+                .applyTo(stats, limits);
+
+        return stats;
+    }
+
+    private int stripeIndex() {
+        return (int) Thread.currentThread().threadId() & (receiptAmountStripes.length - 1);
+    }
+
+    private static ReceiptAmountDistribution[] newStripes() {
+        // степень двойки не меньше числа процессоров, чтобы полосу можно было выбрать маской
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        ReceiptAmountDistribution[] stripes = new ReceiptAmountDistribution[Math.min(count, MAX_STRIPES)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReceiptAmountDistribution();
+        }
+        return stripes;
+    }
+
+    /**
+     * Double cell updated with compare-and-set. The value is surrounded by seven longs on each side
+     * (the superclass fields are laid out first), so the minimum and the maximum never share a
+     * cache line with each other or with neighbouring objects.
+     */
+    static final class PaddedDouble extends PaddedDoubleValue {
+        long p10, p11, p12, p13, p14, p15, p16;
+
+        private static final VarHandle BITS;
+
+        static {
+            try {
+                BITS = MethodHandles.lookup().findVarHandle(PaddedDoubleValue.class, "bits", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        PaddedDouble(double initial) {
+            bits = Double.doubleToRawLongBits(initial);
+        }
+
+        double get() {
+            return Double.longBitsToDouble(bits);
+        }
+
+        void accumulateMin(double value) {
+            long current = bits;
+            // пишем только если значение действительно меньше, иначе линия остаётся в shared-состоянии
+            while (value < Double.longBitsToDouble(current)) {
+                long witness = (long) BITS.compareAndExchange(this, current, Double.doubleToRawLongBits(value));
+                if (witness == current) {
+                    return;
+                }
+                current = witness;
+            }
+        }
+
+        void accumulateMax(double value) {
+            long current = bits;
+            while (value > Double.longBitsToDouble(current)) {
+                long witness = (long) BITS.compareAndExchange(this, current, Double.doubleToRawLongBits(value));
+                if (witness == current) {
+                    return;
+                }
+                current = witness;
+            }
+        }
+    }
+
+    abstract static class PaddedDoubleValue extends PaddedDoubleLeft {
+        volatile long bits;
+    }
+
+    abstract static class PaddedDoubleLeft {
+        long p00, p01, p02, p03, p04, p05, p06;
+    }
+}
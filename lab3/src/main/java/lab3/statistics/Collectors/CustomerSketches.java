@@ -0,0 +1,68 @@
+package lab3.statistics.Collectors;
+
+import lab3.statistics.model.CardinalityMode;
+import lab3.statistics.model.HyperLogLog;
+import lab3.statistics.model.TopKSketch;
+import lab3.statistics.model.TopLimits;
+import lab3.statistics.model.TopSketches;
+
+/**
+ * Customer state of an accumulator in {@link CardinalityMode#approximate(int) approximate}
+ * cardinality mode: a {@link HyperLogLog} of the customers and Space-Saving sketches for both
+ * customer top lists, fed receipt by receipt instead of being built from per-customer totals in the
+ * finisher. Its size depends only on the sketch precision and capacity, not on the number of
+ * customers. Not thread-safe.
+ */
+final class CustomerSketches {
+
+    private final HyperLogLog customers;
+    private final TopKSketch<String> bySpending;
+    private final TopKSketch<String> byOrders;
+
+    private CustomerSketches(int precision, int capacity) {
+        customers = new HyperLogLog(precision);
+        bySpending = new TopKSketch<>(capacity);
+        byOrders = new TopKSketch<>(capacity);
+    }
+
+    /**
+     * Sketches for the given mode, or {@code null} if the mode keeps exact per-customer totals.
+     */
+    static CustomerSketches forMode(CardinalityMode mode, TopLimits limits) {
+        return mode.approximate() ? new CustomerSketches(mode.precision(), TopSketches.capacityFor(limits)) : null;
+    }
+
+    /**
+     * Counts one order of {@code customer} ({@code "first last"}) with the given amount in major units.
+     */
+    void add(String customer, double orderTotal) {
+        customers.add(customer);
+        // веса и компаньоны как у точных скетчей: траты без компаньона, заказы с тратами
+        bySpending.offer(customer, orderTotal, 0);
+        byOrders.offer(customer, 1, orderTotal);
+    }
+
+    CustomerSketches merge(CustomerSketches other) {
+        customers.merge(other.customers);
+        bySpending.merge(other.bySpending);
+        byOrders.merge(other.byOrders);
+        return this;
+    }
+
+    CustomerSketches copy() {
+        CustomerSketches copy = new CustomerSketches(customers.precision(), bySpending.capacity());
+        return copy.merge(this);
+    }
+
+    HyperLogLog customers() {
+        return customers;
+    }
+
+    TopKSketch<String> bySpending() {
+        return bySpending;
+    }
+
+    TopKSketch<String> byOrders() {
+        return byOrders;
+    }
+}
@@ -0,0 +1,405 @@
+package lab3.statistics.Collectors;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import lab3.model.Customer;
+import lab3.model.Item;
+import lab3.model.Receipt;
+import lab3.model.ReceiptStatus;
+import lab3.statistics.model.CardinalityMode;
+import lab3.statistics.model.ItemAverageReceiptMetrics;
+import lab3.statistics.model.PriceTier;
+import lab3.statistics.model.ReceiptStatistics;
+import lab3.statistics.model.TopLimits;
+import lab3.statistics.model.TopMetrics;
+import lab3.statistics.model.TopSketches;
+import lab3.util.KeyDictionary;
+
+/**
+ * Accumulator that maps item, customer, city and state keys to dense ids through dictionaries
+ * shared by all accumulators of one collector and aggregates into arrays indexed by those ids.
+ * Names are resolved back only in {@link #toStatistics()}.
+ *
+ * <p>Because ids are global, every accumulator grows its arrays up to the largest id it has
+ * touched. With many parallel leaves and millions of distinct keys this costs more memory than
+ * the map-based accumulators, so the mode pays off for sequential streams or bounded key sets.
+ * In approximate cardinality mode customers get no ids at all and go into
+ * {@link CustomerSketches} instead.
+ */
+public final class DictionaryReceiptStatisticsAccumulator extends ReceiptStatisticsAccumulator {
+
+    private static final ReceiptStatus[] STATUSES = ReceiptStatus.values();
+    private static final PriceTier[] PRICE_TIERS = PriceTier.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Dictionaries dictionaries;
+    // null, если клиенты считаются точно
+    private final CustomerSketches customerSketches;
+
+    long totalOrders = 0;
+    double totalRevenue = 0;
+    double minReceipt = Double.POSITIVE_INFINITY;
+    double maxReceipt = Double.NEGATIVE_INFINITY;
+
+    long totalItemsSold = 0;
+    long totalLoyaltyPoints = 0;
+
+    long[] ordersByStatus = new long[STATUSES.length];
+    double[] revenueByStatus = new double[STATUSES.length];
+    long[] ordersByMonth = new long[13];
+    double[] revenueByMonth = new double[13];
+    long[] quantityByPriceTier = new long[PRICE_TIERS.length];
+    double[] revenueByPriceTier = new double[PRICE_TIERS.length];
+
+    long[] ordersByCustomer = new long[INITIAL_CAPACITY];
+    double[] revenueByCustomer = new double[INITIAL_CAPACITY];
+    long[] itemQuantity = new long[INITIAL_CAPACITY];
+    double[] itemRevenue = new double[INITIAL_CAPACITY];
+    long[] itemReceiptCount = new long[INITIAL_CAPACITY];
+    double[] itemReceiptTotal = new double[INITIAL_CAPACITY];
+    long[] ordersByCity = new long[INITIAL_CAPACITY];
+    double[] revenueByCity = new double[INITIAL_CAPACITY];
+    long[] ordersByState = new long[INITIAL_CAPACITY];
+    double[] revenueByState = new double[INITIAL_CAPACITY];
+
+    // номер последнего чека, в котором встречался товар: заменяет Set<String> уникальных товаров чека
+    private long[] itemLastReceipt = new long[INITIAL_CAPACITY];
+    private int[] receiptItemIds = new int[16];
+
+    DictionaryReceiptStatisticsAccumulator(
+            Function<Item, String> itemNameResolver,
+            TopLimits topLimits,
+            CardinalityMode cardinalityMode,
+            SummationMode summationMode,
+            Dictionaries dictionaries) {
+        super(itemNameResolver, topLimits, cardinalityMode, summationMode);
+        this.dictionaries = dictionaries;
+        this.customerSketches = CustomerSketches.forMode(cardinalityMode, topLimits);
+    }
+
+    @Override
+    void add(Receipt r) {
+        totalOrders++;
+        long receiptNumber = totalOrders;
+
+        int lines = r.getItems().size();
+        if (receiptItemIds.length < lines) {
+            receiptItemIds = new int[Math.max(lines, receiptItemIds.length * 2)];
+        }
+
+        double orderTotal = 0;
+        long itemsInOrder = 0;
+        int line = 0;
+        for (Item item : r.getItems()) {
+            int itemId = dictionaries.items.idOf(resolveItemName(item));
+            ensureItemCapacity(itemId);
+            receiptItemIds[line++] = itemId;
+
+            double itemRevenueInLine = lineRevenue(item);
+            orderTotal += itemRevenueInLine;
+            itemsInOrder += item.getQuantity();
+            itemQuantity[itemId] += item.getQuantity();
+            itemRevenue[itemId] += itemRevenueInLine;
+
+            int tier = PriceTier.fromUnitPrice(item.getUnitPrice()).ordinal();
+            quantityByPriceTier[tier] += item.getQuantity();
+            revenueByPriceTier[tier] += itemRevenueInLine;
+        }
+
+        for (int i = 0; i < line; i++) {
+            int itemId = receiptItemIds[i];
+            if (itemLastReceipt[itemId] != receiptNumber) {
+                itemLastReceipt[itemId] = receiptNumber;
+                itemReceiptCount[itemId]++;
+                itemReceiptTotal[itemId] += orderTotal;
+            }
+        }
+
+        receiptAmounts().add(r.getStatus(), r.getShippingAddress().state(), toMajor(orderTotal));
+
+        totalRevenue += orderTotal;
+        minReceipt = Math.min(minReceipt, orderTotal);
+        maxReceipt = Math.max(maxReceipt, orderTotal);
+
+        totalItemsSold += itemsInOrder;
+
+        totalLoyaltyPoints += r.getLoyaltyPointsEarned();
+
+        int status = r.getStatus().ordinal();
+        ordersByStatus[status]++;
+        revenueByStatus[status] += orderTotal;
+
+        int month = r.getDate().getMonthValue();
+        ordersByMonth[month]++;
+        revenueByMonth[month] += orderTotal;
+
+        Customer customer = r.getCustomer();
+        if (customerSketches != null) {
+            // словарь клиентов рос бы с числом клиентов, скетчам id не нужны
+            customerSketches.add(customer.getFirstName() + " " + customer.getLastName(), toMajor(orderTotal));
+        } else {
+            int customerId = dictionaries.customers.idOf(
+                    new CustomerKey(customer.getFirstName(), customer.getLastName()));
+            if (customerId >= ordersByCustomer.length) {
+                int capacity = grownCapacity(ordersByCustomer.length, customerId);
+                ordersByCustomer = Arrays.copyOf(ordersByCustomer, capacity);
+                revenueByCustomer = Arrays.copyOf(revenueByCustomer, capacity);
+            }
+            ordersByCustomer[customerId]++;
+            revenueByCustomer[customerId] += orderTotal;
+        }
+
+        int cityId = dictionaries.cities.idOf(r.getShippingAddress().city());
+        if (cityId >= ordersByCity.length) {
+            int capacity = grownCapacity(ordersByCity.length, cityId);
+            ordersByCity = Arrays.copyOf(ordersByCity, capacity);
+            revenueByCity = Arrays.copyOf(revenueByCity, capacity);
+        }
+        ordersByCity[cityId]++;
+        revenueByCity[cityId] += orderTotal;
+
+        int stateId = dictionaries.states.idOf(r.getShippingAddress().state());
+        if (stateId >= ordersByState.length) {
+            int capacity = grownCapacity(ordersByState.length, stateId);
+            ordersByState = Arrays.copyOf(ordersByState, capacity);
+            revenueByState = Arrays.copyOf(revenueByState, capacity);
+        }
+        ordersByState[stateId]++;
+        revenueByState[stateId] += orderTotal;
+    }
+
+    @Override
+    ReceiptStatisticsAccumulator combine(ReceiptStatisticsAccumulator accumulator) {
+        DictionaryReceiptStatisticsAccumulator other = (DictionaryReceiptStatisticsAccumulator) accumulator;
+        if (other.dictionaries != dictionaries) {
+            throw new IllegalArgumentException("Accumulators use different key dictionaries");
+        }
+        totalOrders += other.totalOrders;
+        totalRevenue += other.totalRevenue;
+        minReceipt = Math.min(minReceipt, other.minReceipt);
+        maxReceipt = Math.max(maxReceipt, other.maxReceipt);
+
+        totalItemsSold += other.totalItemsSold;
+        totalLoyaltyPoints += other.totalLoyaltyPoints;
+
+        addAll(ordersByStatus, other.ordersByStatus);
+        addAll(revenueByStatus, other.revenueByStatus);
+        addAll(ordersByMonth, other.ordersByMonth);
+        addAll(revenueByMonth, other.revenueByMonth);
+        addAll(quantityByPriceTier, other.quantityByPriceTier);
+        addAll(revenueByPriceTier, other.revenueByPriceTier);
+
+        ordersByCustomer = mergeInto(ordersByCustomer, other.ordersByCustomer);
+        revenueByCustomer = mergeInto(revenueByCustomer, other.revenueByCustomer);
+        itemQuantity = mergeInto(itemQuantity, other.itemQuantity);
+        itemRevenue = mergeInto(itemRevenue, other.itemRevenue);
+        itemReceiptCount = mergeInto(itemReceiptCount, other.itemReceiptCount);
+        itemReceiptTotal = mergeInto(itemReceiptTotal, other.itemReceiptTotal);
+        ordersByCity = mergeInto(ordersByCity, other.ordersByCity);
+        revenueByCity = mergeInto(revenueByCity, other.revenueByCity);
+        ordersByState = mergeInto(ordersByState, other.ordersByState);
+        revenueByState = mergeInto(revenueByState, other.revenueByState);
+        if (customerSketches != null) {
+            customerSketches.merge(other.customerSketches);
+        }
+        if (itemLastReceipt.length < itemQuantity.length) {
+            itemLastReceipt = Arrays.copyOf(itemLastReceipt, itemQuantity.length);
+        }
+        receiptAmounts().merge(other.receiptAmounts());
+
+        return this;
+    }
+
+    @Override
+    ReceiptStatistics toStatistics() {
+        TopLimits limits = topLimits();
+        Map<ReceiptStatus, Long> ordersByStatusMap = new EnumMap<>(ReceiptStatus.class);
+        Map<ReceiptStatus, Double> revenueByStatusMap = new EnumMap<>(ReceiptStatus.class);
+        for (ReceiptStatus status : STATUSES) {
+            if (ordersByStatus[status.ordinal()] > 0) {
+                ordersByStatusMap.put(status, ordersByStatus[status.ordinal()]);
+                revenueByStatusMap.put(status, toMajor(revenueByStatus[status.ordinal()]));
+            }
+        }
+
+        Map<Integer, Double> revenueByMonthMap = new HashMap<>();
+        for (int month = 1; month < ordersByMonth.length; month++) {
+            if (ordersByMonth[month] > 0) {
+                revenueByMonthMap.put(month, toMajor(revenueByMonth[month]));
+            }
+        }
+
+        Map<PriceTier, Long> quantityByPriceTierMap = new EnumMap<>(PriceTier.class);
+        Map<PriceTier, Double> revenueByPriceTierMap = new EnumMap<>(PriceTier.class);
+        for (PriceTier tier : PRICE_TIERS) {
+            if (quantityByPriceTier[tier.ordinal()] > 0) {
+                quantityByPriceTierMap.put(tier, quantityByPriceTier[tier.ordinal()]);
+                revenueByPriceTierMap.put(tier, toMajor(revenueByPriceTier[tier.ordinal()]));
+            }
+        }
+
+        Map<String, Double> revenueByCustomerMap = new HashMap<>();
+        Map<String, Long> ordersByCustomerMap = new HashMap<>();
+        int customers = Math.min(ordersByCustomer.length, dictionaries.customers.size());
+        for (int id = 0; id < customers; id++) {
+            if (ordersByCustomer[id] > 0) {
+                // разные ключи могут дать одно отображаемое имя ("a b" + "c" и "a" + "b c"),
+                // поэтому складываем, как это делают аккумуляторы с ключом-строкой
+                String name = dictionaries.customers.keyOf(id).displayName();
+                revenueByCustomerMap.merge(name, revenueByCustomer[id], Double::sum);
+                ordersByCustomerMap.merge(name, ordersByCustomer[id], Long::sum);
+            }
+        }
+        Map<String, Double> revenueByCustomerMajor = toMajor(revenueByCustomerMap);
+
+        Map<String, Long> itemQuantityMap = new HashMap<>();
+        Map<String, Double> itemRevenueMap = new HashMap<>();
+        int items = Math.min(itemQuantity.length, dictionaries.items.size());
+        String[] itemNames = new String[items];
+        for (int id = 0; id < items; id++) {
+            itemNames[id] = dictionaries.items.keyOf(id);
+            if (itemQuantity[id] > 0) {
+                itemQuantityMap.put(itemNames[id], itemQuantity[id]);
+                itemRevenueMap.put(itemNames[id], toMajor(itemRevenue[id]));
+            }
+        }
+
+        double revenue = toMajor(totalRevenue);
+        ReceiptStatistics stats = new ReceiptStatistics();
+        stats.setTotalOrders(totalOrders);
+        stats.setTotalRevenue(revenue);
+        stats.setAverageReceiptAmount(totalOrders > 0 ? revenue / totalOrders : 0);
+        stats.setMinReceiptAmount(totalOrders > 0 ? toMajor(minReceipt) : 0);
+        stats.setMaxReceiptAmount(totalOrders > 0 ? toMajor(maxReceipt) : 0);
+        receiptAmounts().copy().applyTo(stats);
+
+        stats.setOrdersByStatus(ordersByStatusMap);
+        stats.setTotalItemsSold(totalItemsSold);
+
+        CustomerSketches sketches = customerSketches != null ? customerSketches.copy() : null;
+        if (sketches != null) {
+            cardinalityMode().applyTo(stats, sketches.customers());
+        } else {
+            cardinalityMode().applyTo(stats, ordersByCustomerMap.keySet());
+        }
+
+        stats.setTotalLoyaltyPoints(totalLoyaltyPoints);
+        stats.setRevenueByMonth(revenueByMonthMap);
+        stats.setItemAverageReceipts(ItemAverageReceiptMetrics.fromTotals(
+                itemNames,
+                Arrays.copyOf(itemReceiptCount, items),
+                Arrays.copyOf(itemReceiptTotal, items),
+                this::toMajor));
+        stats.setRevenueByStatusRanking(TopMetrics.calculateStatusRevenue(revenueByStatusMap, ordersByStatusMap));
+        stats.setSalesByPriceTier(TopMetrics.calculatePriceTierSales(quantityByPriceTierMap, revenueByPriceTierMap));
+
+        int capacity = TopSketches.capacityFor(limits);
+        new TopSketches(
+                sketches != null
+                        ? sketches.bySpending()
+                        : TopMetrics.sketch(revenueByCustomerMajor, Map.of(), capacity),
+                sketches != null
+                        ? sketches.byOrders()
+                        : TopMetrics.sketch(ordersByCustomerMap, revenueByCustomerMajor, capacity),
+                TopMetrics.sketch(itemQuantityMap, itemRevenueMap, capacity),
+                TopMetrics.sketch(
+                        toDoubleMap(dictionaries.cities, revenueByCity, ordersByCity),
+                        toLongMap(dictionaries.cities, ordersByCity),
+                        capacity),
+                TopMetrics.sketch(
+                        toDoubleMap(dictionaries.states, revenueByState, ordersByState),
+                        toLongMap(dictionaries.states, ordersByState),
+                        capacity))
+                .applyTo(stats, limits);
+
+        return stats;
+    }
+
+    private void ensureItemCapacity(int itemId) {
+        if (itemId < itemQuantity.length) {
+            return;
+        }
+        int capacity = grownCapacity(itemQuantity.length, itemId);
+        itemQuantity = Arrays.copyOf(itemQuantity, capacity);
+        itemRevenue = Arrays.copyOf(itemRevenue, capacity);
+        itemReceiptCount = Arrays.copyOf(itemReceiptCount, capacity);
+        itemReceiptTotal = Arrays.copyOf(itemReceiptTotal, capacity);
+        itemLastReceipt = Arrays.copyOf(itemLastReceipt, capacity);
+    }
+
+    private static int grownCapacity(int current, int requiredId) {
+        return Math.max(requiredId + 1, current * 2);
+    }
+
+    private static void addAll(long[] target, long[] source) {
+        for (int i = 0; i < source.length; i++) {
+            target[i] += source[i];
+        }
+    }
+
+    private static void addAll(double[] target, double[] source) {
+        for (int i = 0; i < source.length; i++) {
+            target[i] += source[i];
+        }
+    }
+
+    private static long[] mergeInto(long[] target, long[] source) {
+        long[] result = target.length >= source.length ? target : Arrays.copyOf(target, source.length);
+        addAll(result, source);
+        return result;
+    }
+
+    private static double[] mergeInto(double[] target, double[] source) {
+        double[] result = target.length >= source.length ? target : Arrays.copyOf(target, source.length);
+        addAll(result, source);
+        return result;
+    }
+
+    private Map<String, Double> toDoubleMap(KeyDictionary<String> dictionary, double[] values, long[] counts) {
+        Map<String, Double> result = new HashMap<>();
+        int size = Math.min(counts.length, dictionary.size());
+        for (int id = 0; id < size; id++) {
+            if (counts[id] > 0) {
+                result.put(dictionary.keyOf(id), toMajor(values[id]));
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Long> toLongMap(KeyDictionary<String> dictionary, long[] counts) {
+        Map<String, Long> result = new HashMap<>();
+        int size = Math.min(counts.length, dictionary.size());
+        for (int id = 0; id < size; id++) {
+            if (counts[id] > 0) {
+                result.put(dictionary.keyOf(id), counts[id]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Customer key built from the name parts as they are stored in {@link Customer}: hashing it
+     * reuses the cached hash codes of both strings instead of concatenating them for every receipt.
+     */
+    record CustomerKey(String firstName, String lastName) {
+
+        String displayName() {
+            return firstName + " " + lastName;
+        }
+    }
+
+    /**
+     * Key dictionaries shared by all accumulators of one collector so that ids are comparable
+     * across fork-join leaves and {@link #combine} can add arrays element-wise.
+     */
+    static final class Dictionaries {
+        final KeyDictionary<String> items = new KeyDictionary<>();
+        final KeyDictionary<CustomerKey> customers = new KeyDictionary<>();
+        final KeyDictionary<String> cities = new KeyDictionary<>();
+        final KeyDictionary<String> states = new KeyDictionary<>();
+    }
+}
@@ -0,0 +1,128 @@
+package lab3.statistics.Collectors;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import lab3.model.Receipt;
+import lab3.statistics.model.ReceiptStatistics;
+
+/**
+ * Long-lived, online receipt statistics. Producers on any number of threads {@link #add} receipts
+ * into one of several stripes, each an ordinary {@link ReceiptStatisticsAccumulator} guarded by its
+ * own lock; {@link #snapshot()} merges the stripes into a fresh accumulator, locking one stripe at a
+ * time, and finishes it. A refresh therefore costs O(accumulated state) instead of re-aggregating
+ * all receipts, and writers are only ever held up by the merge of their own stripe.
+ *
+ * <p>Every receipt is either fully contained in a snapshot or not at all. Receipts added to
+ * different stripes while a snapshot is being taken may or may not be included, as if the snapshot
+ * had been taken at a slightly different moment for each stripe. Without intervening writes
+ * {@link #snapshot()} reuses the previous result without merging again.
+ */
+public final class IncrementalReceiptStatistics {
+
+    private final Supplier<ReceiptStatisticsAccumulator> supplier;
+    private final Stripe[] stripes;
+    private final Object snapshotLock = new Object();
+    private long snapshotVersion = -1;
+    private ReceiptStatistics lastSnapshot;
+
+    public IncrementalReceiptStatistics() {
+        this(ReceiptStatisticsCollector.toStatistics());
+    }
+
+    public IncrementalReceiptStatistics(ReceiptStatisticsCollector collector) {
+        this(collector, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param collector provides the accumulator implementation and item name resolution
+     * @param concurrency expected number of producer threads; rounded up to a power of two stripes
+     */
+    public IncrementalReceiptStatistics(ReceiptStatisticsCollector collector, int concurrency) {
+        this.supplier = Objects.requireNonNull(collector, "collector").supplier();
+        int stripeCount = 1;
+        while (stripeCount < concurrency) {
+            stripeCount <<= 1;
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(supplier.get());
+        }
+    }
+
+    public void add(Receipt receipt) {
+        Stripe stripe = stripeForCurrentThread();
+        synchronized (stripe) {
+            stripe.accumulator.add(receipt);
+            stripe.version++;
+        }
+    }
+
+    /**
+     * Adds the receipts under a single stripe lock, which is cheaper than adding them one by one.
+     */
+    public void addAll(Iterable<Receipt> receipts) {
+        Stripe stripe = stripeForCurrentThread();
+        synchronized (stripe) {
+            for (Receipt receipt : receipts) {
+                stripe.accumulator.add(receipt);
+                stripe.version++;
+            }
+        }
+    }
+
+    /**
+     * Every call returns its own copy of the statistics, so callers may modify or
+     * {@link ReceiptStatistics#merge merge} it without affecting other readers.
+     */
+    public ReceiptStatistics snapshot() {
+        synchronized (snapshotLock) {
+            long version = version();
+            if (version == snapshotVersion) {
+                return lastSnapshot.copy();
+            }
+            ReceiptStatisticsAccumulator merged = supplier.get();
+            long mergedVersion = 0;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    merged.combine(stripe.accumulator);
+                    mergedVersion += stripe.version;
+                }
+            }
+            lastSnapshot = merged.toStatistics();
+            snapshotVersion = mergedVersion;
+            return lastSnapshot.copy();
+        }
+    }
+
+    /**
+     * Number of receipts added so far; grows monotonically.
+     */
+    public long receiptCount() {
+        return version();
+    }
+
+    private long version() {
+        long version = 0;
+        for (Stripe stripe : stripes) {
+            version += stripe.version;
+        }
+        return version;
+    }
+
+    private Stripe stripeForCurrentThread() {
+        long id = Thread.currentThread().threadId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return stripes[(hash >>> 16) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe {
+        private final ReceiptStatisticsAccumulator accumulator;
+        // пишется под локом полосы, читается без него для быстрой проверки снимка
+        private volatile long version;
+
+        private Stripe(ReceiptStatisticsAccumulator accumulator) {
+            this.accumulator = accumulator;
+        }
+    }
+}
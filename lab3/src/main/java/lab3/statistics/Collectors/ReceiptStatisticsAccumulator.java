@@ -1,169 +1,108 @@
 package lab3.statistics.Collectors;
 
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.function.Function;
 
 import lab3.model.Item;
 import lab3.model.Receipt;
-import lab3.model.ReceiptStatus;
-import lab3.statistics.model.ItemAverageReceiptMetrics;
-import lab3.statistics.model.PriceTier;
+import lab3.statistics.model.CardinalityMode;
+import lab3.statistics.model.ReceiptAmountDistribution;
 import lab3.statistics.model.ReceiptStatistics;
-import lab3.statistics.model.TotalAverage;
-import lab3.statistics.model.TotalAverageMetrics;
-import lab3.statistics.model.TopMetrics;
-
-public class ReceiptStatisticsAccumulator {
-    private final long itemNameDelayMillis;
-
-    long totalOrders = 0;
-    double totalRevenue = 0;
-    double minReceipt = Double.POSITIVE_INFINITY;
-    double maxReceipt = Double.NEGATIVE_INFINITY;
-
-    long totalItemsSold = 0;
-    long totalLoyaltyPoints = 0;
-
-    Map<ReceiptStatus, Long> ordersByStatus = new ConcurrentHashMap<>();
-    Map<Integer, Double> revenueByMonth = new ConcurrentHashMap<>();
-    Set<String> uniqueCustomers = ConcurrentHashMap.newKeySet();
-    Map<String, Double> revenueByCustomer = new ConcurrentHashMap<>();
-    Map<String, Long> ordersByCustomer = new ConcurrentHashMap<>();
-    Map<String, Long> itemQuantityByName = new ConcurrentHashMap<>();
-    Map<String, Double> itemRevenueByName = new ConcurrentHashMap<>();
-    Map<String, Double> revenueByCity = new ConcurrentHashMap<>();
-    Map<String, Long> ordersByCity = new ConcurrentHashMap<>();
-    Map<ReceiptStatus, Double> revenueByStatus = new ConcurrentHashMap<>();
-    Map<PriceTier, Long> quantityByPriceTier = new ConcurrentHashMap<>();
-    Map<PriceTier, Double> revenueByPriceTier = new ConcurrentHashMap<>();
-    Map<String, Double> revenueByState = new ConcurrentHashMap<>();
-    Map<String, Long> ordersByState = new ConcurrentHashMap<>();
-    ItemAverageReceiptMetrics.ItemAverageAccumulator itemAverageAccumulator;
-    TotalAverageMetrics.TotalAverageAccumulator totalAverageAccumulator;
-
-    public ReceiptStatisticsAccumulator() {
-        this(0L);
+import lab3.statistics.model.TopLimits;
+import lab3.util.LatencyProfile;
+
+/**
+ * Mutable container used by {@link ReceiptStatisticsCollector}. Implementations differ in how the
+ * intermediate state is stored; see {@link AccumulatorMode}. Only accumulators of the same
+ * implementation (and created by the same collector) can be combined.
+ */
+public abstract class ReceiptStatisticsAccumulator {
+    private final Function<Item, String> itemNameResolver;
+    private final TopLimits topLimits;
+    private final CardinalityMode cardinalityMode;
+    private final SummationMode summationMode;
+    // распределение сумм чеков (общее, по статусам и по штатам) общее для всех реализаций
+    private final ReceiptAmountDistribution receiptAmounts = new ReceiptAmountDistribution();
+
+    protected ReceiptStatisticsAccumulator(Function<Item, String> itemNameResolver) {
+        this(itemNameResolver, TopLimits.defaults());
     }
 
-    public ReceiptStatisticsAccumulator(long itemNameDelayMillis) {
-        this.itemNameDelayMillis = Math.max(0L, itemNameDelayMillis);
-        this.itemAverageAccumulator = ItemAverageReceiptMetrics.newAccumulator(this::resolveItemName);
-        this.totalAverageAccumulator = TotalAverageMetrics.newAccumulator();
+    protected ReceiptStatisticsAccumulator(Function<Item, String> itemNameResolver, TopLimits topLimits) {
+        this(itemNameResolver, topLimits, CardinalityMode.exact());
     }
 
-    void add(Receipt r) {
-        totalOrders++;
-
-        double orderTotal = 0;
-        long itemsInOrder = 0;
-        Set<String> itemsInReceipt = new HashSet<>();
-        for (Item item : r.getItems()) {
-            String itemName = resolveItemName(item);
-            double itemRevenue = item.getUnitPrice() * item.getQuantity();
-            orderTotal += itemRevenue;
-            itemsInOrder += item.getQuantity();
-            itemQuantityByName.merge(itemName, (long) item.getQuantity(), Long::sum);
-            itemRevenueByName.merge(itemName, itemRevenue, Double::sum);
-            itemsInReceipt.add(itemName);
-
-            PriceTier tier = PriceTier.fromUnitPrice(item.getUnitPrice());
-            quantityByPriceTier.merge(tier, (long) item.getQuantity(), Long::sum);
-            revenueByPriceTier.merge(tier, itemRevenue, Double::sum);
-        }
-
-        itemAverageAccumulator.addResolved(orderTotal, itemsInReceipt);
-        totalAverageAccumulator.addResolved(orderTotal);
-
-        totalRevenue += orderTotal;
-        minReceipt = Math.min(minReceipt, orderTotal);
-        maxReceipt = Math.max(maxReceipt, orderTotal);
-
-        totalItemsSold += itemsInOrder;
-
-        totalLoyaltyPoints += r.getLoyaltyPointsEarned();
+    protected ReceiptStatisticsAccumulator(
+            Function<Item, String> itemNameResolver,
+            TopLimits topLimits,
+            CardinalityMode cardinalityMode) {
+        this(itemNameResolver, topLimits, cardinalityMode, SummationMode.DOUBLE);
+    }
 
-        ordersByStatus.merge(r.getStatus(), 1L, Long::sum);
-        revenueByStatus.merge(r.getStatus(), orderTotal, Double::sum);
+    protected ReceiptStatisticsAccumulator(
+            Function<Item, String> itemNameResolver,
+            TopLimits topLimits,
+            CardinalityMode cardinalityMode,
+            SummationMode summationMode) {
+        this.itemNameResolver = Objects.requireNonNull(itemNameResolver, "itemNameResolver");
+        this.topLimits = Objects.requireNonNull(topLimits, "topLimits");
+        this.cardinalityMode = Objects.requireNonNull(cardinalityMode, "cardinalityMode");
+        this.summationMode = Objects.requireNonNull(summationMode, "summationMode");
+    }
 
-        revenueByMonth.merge(r.getDate().getMonthValue(), orderTotal, Double::sum);
+    abstract void add(Receipt r);
 
-        String customerKey = r.getCustomer().getFirstName() + " " + r.getCustomer().getLastName();
-        uniqueCustomers.add(customerKey);
-        revenueByCustomer.merge(customerKey, orderTotal, Double::sum);
-        ordersByCustomer.merge(customerKey, 1L, Long::sum);
+    abstract ReceiptStatisticsAccumulator combine(ReceiptStatisticsAccumulator other);
 
-        String city = r.getShippingAddress().city();
-        revenueByCity.merge(city, orderTotal, Double::sum);
-        ordersByCity.merge(city, 1L, Long::sum);
+    abstract ReceiptStatistics toStatistics();
 
-        String state = r.getShippingAddress().state();
-        revenueByState.merge(state, orderTotal, Double::sum);
-        ordersByState.merge(state, 1L, Long::sum);
+    TopLimits topLimits() {
+        return topLimits;
     }
 
-    ReceiptStatisticsAccumulator combine(ReceiptStatisticsAccumulator other) {
-        totalOrders += other.totalOrders;
-        totalRevenue += other.totalRevenue;
-        minReceipt = Math.min(minReceipt, other.minReceipt);
-        maxReceipt = Math.max(maxReceipt, other.maxReceipt);
+    CardinalityMode cardinalityMode() {
+        return cardinalityMode;
+    }
 
-        totalItemsSold += other.totalItemsSold;
-        totalLoyaltyPoints += other.totalLoyaltyPoints;
+    SummationMode summationMode() {
+        return summationMode;
+    }
 
-        other.ordersByStatus.forEach((k, v) -> ordersByStatus.merge(k, v, Long::sum));
+    ReceiptAmountDistribution receiptAmounts() {
+        return receiptAmounts;
+    }
 
-        other.revenueByMonth.forEach((k, v) -> revenueByMonth.merge(k, v, Double::sum));
+    String resolveItemName(Item item) {
+        return itemNameResolver.apply(item);
+    }
 
-        uniqueCustomers.addAll(other.uniqueCustomers);
+    /**
+     * Revenue of one receipt line; every revenue total is a sum of these amounts.
+     */
+    double lineRevenue(Item item) {
+        return summationMode.lineAmount(item);
+    }
 
-        other.revenueByCustomer.forEach((k, v) -> revenueByCustomer.merge(k, v, Double::sum));
-        other.ordersByCustomer.forEach((k, v) -> ordersByCustomer.merge(k, v, Long::sum));
-        other.itemQuantityByName.forEach((k, v) -> itemQuantityByName.merge(k, v, Long::sum));
-        other.itemRevenueByName.forEach((k, v) -> itemRevenueByName.merge(k, v, Double::sum));
-        other.revenueByCity.forEach((k, v) -> revenueByCity.merge(k, v, Double::sum));
-        other.ordersByCity.forEach((k, v) -> ordersByCity.merge(k, v, Long::sum));
-        other.revenueByStatus.forEach((k, v) -> revenueByStatus.merge(k, v, Double::sum));
-        other.quantityByPriceTier.forEach((k, v) -> quantityByPriceTier.merge(k, v, Long::sum));
-        other.revenueByPriceTier.forEach((k, v) -> revenueByPriceTier.merge(k, v, Double::sum));
-        other.revenueByState.forEach((k, v) -> revenueByState.merge(k, v, Double::sum));
-        other.ordersByState.forEach((k, v) -> ordersByState.merge(k, v, Long::sum));
-        itemAverageAccumulator.combine(other.itemAverageAccumulator);
-        totalAverageAccumulator.combine(other.totalAverageAccumulator);
+    /**
+     * A summed amount in major units, see {@link SummationMode#toMajor(double)}; sums are converted
+     * only when the statistics are built.
+     */
+    double toMajor(double amount) {
+        return summationMode.toMajor(amount);
+    }
 
-        return this;
+    <K> Map<K, Double> toMajor(Map<K, Double> amounts) {
+        return summationMode.toMajor(amounts);
     }
 
-    ReceiptStatistics toStatistics() {
-        ReceiptStatistics stats = new ReceiptStatistics();
-        stats.setTotalOrders(totalOrders);
-        stats.setTotalRevenue(totalRevenue);
-        stats.setAverageReceiptAmount(totalOrders > 0 ? totalRevenue / totalOrders : 0);
-        stats.setMinReceiptAmount(totalOrders > 0 ? minReceipt : 0);
-        stats.setMaxReceiptAmount(totalOrders > 0 ? maxReceipt : 0);
-
-        stats.setOrdersByStatus(ordersByStatus);
-        stats.setTotalItemsSold(totalItemsSold);
-
-        stats.setUniqueCustomers(uniqueCustomers.size());
-
-        stats.setTotalLoyaltyPoints(totalLoyaltyPoints);
-        stats.setRevenueByMonth(revenueByMonth);
-        stats.setTopCustomersBySpending(TopMetrics.calculateTopCustomers(revenueByCustomer));
-        stats.setTopCustomersByOrderCount(
-                TopMetrics.calculateTopCustomersByOrders(ordersByCustomer, revenueByCustomer));
-        stats.setTopItemsByQuantity(TopMetrics.calculateTopItems(itemQuantityByName, itemRevenueByName));
-        stats.setItemAverageReceipts(itemAverageAccumulator.finish());
-        stats.setTopCitiesByRevenue(TopMetrics.calculateTopCities(revenueByCity, ordersByCity));
-        stats.setRevenueByStatusRanking(TopMetrics.calculateStatusRevenue(revenueByStatus, ordersByStatus));
-        stats.setSalesByPriceTier(TopMetrics.calculatePriceTierSales(quantityByPriceTier, revenueByPriceTier));
-        stats.setTopStatesByRevenue(TopMetrics.calculateTopStates(revenueByState, ordersByState));
-
-        return stats;
+    static Function<Item, String> delayedItemNameResolver(long itemNameDelayMillis) {
+        return delayedItemNameResolver(itemNameDelayMillis, LatencyProfile.busySpin());
     }
 
-    private String resolveItemName(Item item) {
-        return itemNameDelayMillis > 0 ? item.getName(itemNameDelayMillis) : item.getName();
+    static Function<Item, String> delayedItemNameResolver(long itemNameDelayMillis, LatencyProfile latencyProfile) {
+        Objects.requireNonNull(latencyProfile, "latencyProfile");
+        long delayMillis = Math.max(0L, itemNameDelayMillis);
+        return delayMillis > 0 ? item -> item.getName(delayMillis, latencyProfile) : Item::getName;
     }
 }
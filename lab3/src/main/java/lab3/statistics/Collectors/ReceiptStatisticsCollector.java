@@ -1,5 +1,6 @@
 package lab3.statistics.Collectors;
 
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
@@ -7,28 +8,140 @@ import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collector;
 
+import lab3.model.Item;
 import lab3.model.Receipt;
+import lab3.statistics.model.CardinalityMode;
 import lab3.statistics.model.ReceiptStatistics;
+import lab3.statistics.model.TopLimits;
+import lab3.util.ItemNameCache;
+import lab3.util.LatencyProfile;
 
 public class ReceiptStatisticsCollector implements Collector<Receipt, ReceiptStatisticsAccumulator, ReceiptStatistics> {
 
-    private final long itemNameDelayMillis;
+    private final Function<Item, String> itemNameResolver;
+    private final AccumulatorMode mode;
+    private final TopLimits topLimits;
+    private final CardinalityMode cardinalityMode;
+    private final SummationMode summationMode;
+    private final DictionaryReceiptStatisticsAccumulator.Dictionaries dictionaries;
 
     public static ReceiptStatisticsCollector toStatistics() {
-        return new ReceiptStatisticsCollector(0L);
+        return withItemNameDelay(0L);
     }
 
     public static ReceiptStatisticsCollector withItemNameDelay(long delayMillis) {
-        return new ReceiptStatisticsCollector(delayMillis);
+        return withItemNameResolver(ReceiptStatisticsAccumulator.delayedItemNameResolver(delayMillis));
     }
 
-    private ReceiptStatisticsCollector(long itemNameDelayMillis) {
-        this.itemNameDelayMillis = Math.max(0L, itemNameDelayMillis);
+    /**
+     * Like {@link #withItemNameDelay(long)}, but the delay is spent with the given profile,
+     * e.g. {@link LatencyProfile#parking()} for an I/O-bound catalogue.
+     */
+    public static ReceiptStatisticsCollector withItemNameDelay(long delayMillis, LatencyProfile latencyProfile) {
+        return withItemNameResolver(ReceiptStatisticsAccumulator.delayedItemNameResolver(delayMillis, latencyProfile));
+    }
+
+    /**
+     * Like {@link #withItemNameDelay(long)}, but every distinct item name is looked up once and then
+     * served from the cache (as long as it is not evicted). The cache may be shared between
+     * collectors and calls.
+     */
+    public static ReceiptStatisticsCollector withItemNameCache(ItemNameCache cache, long delayMillis) {
+        return withItemNameResolver(cache.resolver(ReceiptStatisticsAccumulator.delayedItemNameResolver(delayMillis)));
+    }
+
+    /**
+     * Collector that obtains item names through the given function instead of {@link Item#getName()},
+     * e.g. a lookup into names resolved ahead of time or a cache in front of a slow catalogue.
+     */
+    public static ReceiptStatisticsCollector withItemNameResolver(Function<Item, String> itemNameResolver) {
+        return new ReceiptStatisticsCollector(itemNameResolver, AccumulatorMode.SINGLE_WRITER,
+                TopLimits.defaults(), CardinalityMode.exact(), SummationMode.DOUBLE);
+    }
+
+    private ReceiptStatisticsCollector(
+            Function<Item, String> itemNameResolver,
+            AccumulatorMode mode,
+            TopLimits topLimits,
+            CardinalityMode cardinalityMode,
+            SummationMode summationMode) {
+        this.itemNameResolver = Objects.requireNonNull(itemNameResolver, "itemNameResolver");
+        this.mode = Objects.requireNonNull(mode, "mode");
+        this.topLimits = Objects.requireNonNull(topLimits, "topLimits");
+        this.cardinalityMode = Objects.requireNonNull(cardinalityMode, "cardinalityMode");
+        this.summationMode = Objects.requireNonNull(summationMode, "summationMode");
+        // словари общие для всех аккумуляторов коллектора, иначе id нельзя складывать в combine
+        this.dictionaries = mode == AccumulatorMode.DICTIONARY_ENCODED
+                ? new DictionaryReceiptStatisticsAccumulator.Dictionaries()
+                : null;
+    }
+
+    /**
+     * Returns a collector with the same item name resolution and the given accumulator mode.
+     * In {@link AccumulatorMode#DICTIONARY_ENCODED} mode the returned collector owns its key
+     * dictionaries, so reusing it keeps already assigned ids.
+     */
+    public ReceiptStatisticsCollector withMode(AccumulatorMode mode) {
+        return new ReceiptStatisticsCollector(itemNameResolver, mode, topLimits, cardinalityMode, summationMode);
+    }
+
+    /**
+     * Returns a collector that reports top lists of the given lengths, e.g.
+     * {@code TopLimits.defaults().withCustomersBySpending(100)}.
+     */
+    public ReceiptStatisticsCollector withTopLimits(TopLimits topLimits) {
+        return new ReceiptStatisticsCollector(itemNameResolver, mode, topLimits, cardinalityMode, summationMode);
+    }
+
+    /**
+     * Returns a collector that counts distinct customers as given, e.g.
+     * {@code CardinalityMode.mergeable(12)} to attach a HyperLogLog sketch so that statistics of
+     * batches or windows merged later count each customer once. The default exact mode builds no
+     * sketch; {@code CardinalityMode.approximate(12)} keeps only sketches of the customers, so the
+     * customer count and top lists become estimates.
+     */
+    public ReceiptStatisticsCollector withCardinalityMode(CardinalityMode cardinalityMode) {
+        return new ReceiptStatisticsCollector(itemNameResolver, mode, topLimits, cardinalityMode, summationMode);
+    }
+
+    /**
+     * Returns a collector that sums revenue in the given mode; {@link SummationMode#FIXED_POINT}
+     * makes the statistics bit-reproducible across splits and combine orders, and
+     * {@link SummationMode#MINOR_UNITS} also makes them exact for prices in whole cents.
+     */
+    public ReceiptStatisticsCollector withSummationMode(SummationMode summationMode) {
+        return new ReceiptStatisticsCollector(itemNameResolver, mode, topLimits, cardinalityMode, summationMode);
+    }
+
+    public AccumulatorMode mode() {
+        return mode;
+    }
+
+    public TopLimits topLimits() {
+        return topLimits;
+    }
+
+    public CardinalityMode cardinalityMode() {
+        return cardinalityMode;
+    }
+
+    public SummationMode summationMode() {
+        return summationMode;
     }
 
     @Override
     public Supplier<ReceiptStatisticsAccumulator> supplier() {
-        return () -> new ReceiptStatisticsAccumulator(itemNameDelayMillis);
+        return switch (mode) {
+            case SINGLE_WRITER -> () ->
+                    new SingleWriterReceiptStatisticsAccumulator(
+                            itemNameResolver, topLimits, cardinalityMode, summationMode);
+            case CONCURRENT -> () ->
+                    new ConcurrentReceiptStatisticsAccumulator(
+                            itemNameResolver, topLimits, cardinalityMode, summationMode);
+            case DICTIONARY_ENCODED -> () ->
+                    new DictionaryReceiptStatisticsAccumulator(
+                            itemNameResolver, topLimits, cardinalityMode, summationMode, dictionaries);
+        };
     }
 
     @Override
@@ -46,8 +159,15 @@ public class ReceiptStatisticsCollector implements Collector<Receipt, ReceiptSta
         return ReceiptStatisticsAccumulator::toStatistics;
     }
 
+    /**
+     * In {@link AccumulatorMode#CONCURRENT} mode the collector is {@code CONCURRENT} and {@code UNORDERED},
+     * so a parallel stream adds into one shared accumulator instead of combining one per split.
+     */
     @Override
     public Set<Characteristics> characteristics() {
-        return Set.of(); // нужен finisher, поэтому IDENTITY_FINISH не ставим
+        // нужен finisher, поэтому IDENTITY_FINISH не ставим
+        return mode == AccumulatorMode.CONCURRENT
+                ? Set.of(Characteristics.CONCURRENT, Characteristics.UNORDERED)
+                : Set.of();
     }
 }
@@ -0,0 +1,274 @@
+package lab3.statistics.Collectors;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import lab3.model.Item;
+import lab3.model.Receipt;
+import lab3.model.ReceiptStatus;
+import lab3.statistics.model.CardinalityMode;
+import lab3.statistics.model.ItemAverageReceiptMetrics;
+import lab3.statistics.model.PriceTier;
+import lab3.statistics.model.ReceiptStatistics;
+import lab3.statistics.model.TopLimits;
+import lab3.statistics.model.TopMetrics;
+import lab3.statistics.model.TopSketches;
+
+/**
+ * Accumulator for a single writer thread, which is what the {@link java.util.stream.Collector}
+ * contract guarantees: every fork-join leaf gets its own container from {@code supplier()} and
+ * containers are only touched again in {@code combiner()}. State is kept in plain {@link HashMap}s,
+ * {@link EnumMap}s and arrays, and each key is hashed once per receipt by keeping the count and
+ * the revenue of a key in one mutable entry. In approximate cardinality mode customers go into
+ * {@link CustomerSketches} instead of a per-customer map.
+ */
+public final class SingleWriterReceiptStatisticsAccumulator extends ReceiptStatisticsAccumulator {
+
+    long totalOrders = 0;
+    double totalRevenue = 0;
+    double minReceipt = Double.POSITIVE_INFINITY;
+    double maxReceipt = Double.NEGATIVE_INFINITY;
+
+    long totalItemsSold = 0;
+    long totalLoyaltyPoints = 0;
+
+    Map<ReceiptStatus, Totals> byStatus = new EnumMap<>(ReceiptStatus.class);
+    long[] ordersByMonth = new long[12];
+    double[] revenueByMonth = new double[12];
+    Map<String, Totals> byCustomer = new HashMap<>();
+    Map<String, Totals> byItem = new HashMap<>();
+    Map<String, Totals> byCity = new HashMap<>();
+    Map<PriceTier, Totals> byPriceTier = new EnumMap<>(PriceTier.class);
+    Map<String, Totals> byState = new HashMap<>();
+    ItemAverageReceiptMetrics.ItemAverageAccumulator itemAverageAccumulator;
+    // null, если клиенты считаются точно
+    final CustomerSketches customerSketches;
+
+    public SingleWriterReceiptStatisticsAccumulator() {
+        this(0L);
+    }
+
+    public SingleWriterReceiptStatisticsAccumulator(long itemNameDelayMillis) {
+        this(delayedItemNameResolver(itemNameDelayMillis));
+    }
+
+    public SingleWriterReceiptStatisticsAccumulator(Function<Item, String> itemNameResolver) {
+        this(itemNameResolver, TopLimits.defaults());
+    }
+
+    public SingleWriterReceiptStatisticsAccumulator(Function<Item, String> itemNameResolver, TopLimits topLimits) {
+        this(itemNameResolver, topLimits, CardinalityMode.exact());
+    }
+
+    public SingleWriterReceiptStatisticsAccumulator(
+            Function<Item, String> itemNameResolver,
+            TopLimits topLimits,
+            CardinalityMode cardinalityMode) {
+        this(itemNameResolver, topLimits, cardinalityMode, SummationMode.DOUBLE);
+    }
+
+    public SingleWriterReceiptStatisticsAccumulator(
+            Function<Item, String> itemNameResolver,
+            TopLimits topLimits,
+            CardinalityMode cardinalityMode,
+            SummationMode summationMode) {
+        super(itemNameResolver, topLimits, cardinalityMode, summationMode);
+        this.itemAverageAccumulator = ItemAverageReceiptMetrics.newAccumulator(itemNameResolver);
+        this.customerSketches = CustomerSketches.forMode(cardinalityMode, topLimits);
+    }
+
+    @Override
+    void add(Receipt r) {
+        totalOrders++;
+
+        double orderTotal = 0;
+        long itemsInOrder = 0;
+        Set<String> itemsInReceipt = new HashSet<>();
+        for (Item item : r.getItems()) {
+            String itemName = resolveItemName(item);
+            double itemRevenue = lineRevenue(item);
+            orderTotal += itemRevenue;
+            itemsInOrder += item.getQuantity();
+            byItem.computeIfAbsent(itemName, key -> new Totals()).add(item.getQuantity(), itemRevenue);
+            itemsInReceipt.add(itemName);
+
+            PriceTier tier = PriceTier.fromUnitPrice(item.getUnitPrice());
+            byPriceTier.computeIfAbsent(tier, key -> new Totals()).add(item.getQuantity(), itemRevenue);
+        }
+
+        itemAverageAccumulator.addResolved(orderTotal, itemsInReceipt);
+        receiptAmounts().add(r.getStatus(), r.getShippingAddress().state(), toMajor(orderTotal));
+
+        totalRevenue += orderTotal;
+        minReceipt = Math.min(minReceipt, orderTotal);
+        maxReceipt = Math.max(maxReceipt, orderTotal);
+
+        totalItemsSold += itemsInOrder;
+
+        totalLoyaltyPoints += r.getLoyaltyPointsEarned();
+
+        byStatus.computeIfAbsent(r.getStatus(), key -> new Totals()).add(1L, orderTotal);
+
+        int month = r.getDate().getMonthValue() - 1;
+        ordersByMonth[month]++;
+        revenueByMonth[month] += orderTotal;
+
+        String customerKey = r.getCustomer().getFirstName() + " " + r.getCustomer().getLastName();
+        if (customerSketches != null) {
+            customerSketches.add(customerKey, toMajor(orderTotal));
+        } else {
+            byCustomer.computeIfAbsent(customerKey, key -> new Totals()).add(1L, orderTotal);
+        }
+
+        byCity.computeIfAbsent(r.getShippingAddress().city(), key -> new Totals()).add(1L, orderTotal);
+        byState.computeIfAbsent(r.getShippingAddress().state(), key -> new Totals()).add(1L, orderTotal);
+    }
+
+    @Override
+    ReceiptStatisticsAccumulator combine(ReceiptStatisticsAccumulator accumulator) {
+        SingleWriterReceiptStatisticsAccumulator other = (SingleWriterReceiptStatisticsAccumulator) accumulator;
+        totalOrders += other.totalOrders;
+        totalRevenue += other.totalRevenue;
+        minReceipt = Math.min(minReceipt, other.minReceipt);
+        maxReceipt = Math.max(maxReceipt, other.maxReceipt);
+
+        totalItemsSold += other.totalItemsSold;
+        totalLoyaltyPoints += other.totalLoyaltyPoints;
+
+        for (int month = 0; month < ordersByMonth.length; month++) {
+            ordersByMonth[month] += other.ordersByMonth[month];
+            revenueByMonth[month] += other.revenueByMonth[month];
+        }
+
+        mergeTotals(byStatus, other.byStatus);
+        mergeTotals(byCustomer, other.byCustomer);
+        if (customerSketches != null) {
+            customerSketches.merge(other.customerSketches);
+        }
+        mergeTotals(byItem, other.byItem);
+        mergeTotals(byCity, other.byCity);
+        mergeTotals(byPriceTier, other.byPriceTier);
+        mergeTotals(byState, other.byState);
+        itemAverageAccumulator.combine(other.itemAverageAccumulator);
+        receiptAmounts().merge(other.receiptAmounts());
+
+        return this;
+    }
+
+    @Override
+    ReceiptStatistics toStatistics() {
+        TopLimits limits = topLimits();
+        Map<ReceiptStatus, Long> ordersByStatus = new EnumMap<>(ReceiptStatus.class);
+        Map<ReceiptStatus, Double> revenueByStatus = new EnumMap<>(ReceiptStatus.class);
+        splitTotals(byStatus, ordersByStatus, revenueByStatus);
+
+        Map<Integer, Double> revenueByMonthMap = new HashMap<>();
+        for (int month = 0; month < ordersByMonth.length; month++) {
+            if (ordersByMonth[month] > 0) {
+                revenueByMonthMap.put(month + 1, toMajor(revenueByMonth[month]));
+            }
+        }
+
+        Map<String, Long> ordersByCustomer = HashMap.newHashMap(byCustomer.size());
+        Map<String, Double> revenueByCustomer = HashMap.newHashMap(byCustomer.size());
+        splitTotals(byCustomer, ordersByCustomer, revenueByCustomer);
+
+        Map<String, Long> itemQuantityByName = HashMap.newHashMap(byItem.size());
+        Map<String, Double> itemRevenueByName = HashMap.newHashMap(byItem.size());
+        splitTotals(byItem, itemQuantityByName, itemRevenueByName);
+
+        Map<String, Long> ordersByCity = HashMap.newHashMap(byCity.size());
+        Map<String, Double> revenueByCity = HashMap.newHashMap(byCity.size());
+        splitTotals(byCity, ordersByCity, revenueByCity);
+
+        Map<PriceTier, Long> quantityByPriceTier = new EnumMap<>(PriceTier.class);
+        Map<PriceTier, Double> revenueByPriceTier = new EnumMap<>(PriceTier.class);
+        splitTotals(byPriceTier, quantityByPriceTier, revenueByPriceTier);
+
+        Map<String, Long> ordersByState = HashMap.newHashMap(byState.size());
+        Map<String, Double> revenueByState = HashMap.newHashMap(byState.size());
+        splitTotals(byState, ordersByState, revenueByState);
+
+        double revenue = toMajor(totalRevenue);
+        ReceiptStatistics stats = new ReceiptStatistics();
+        stats.setTotalOrders(totalOrders);
+        stats.setTotalRevenue(revenue);
+        stats.setAverageReceiptAmount(totalOrders > 0 ? revenue / totalOrders : 0);
+        stats.setMinReceiptAmount(totalOrders > 0 ? toMajor(minReceipt) : 0);
+        stats.setMaxReceiptAmount(totalOrders > 0 ? toMajor(maxReceipt) : 0);
+        receiptAmounts().copy().applyTo(stats);
+
+        stats.setOrdersByStatus(ordersByStatus);
+        stats.setTotalItemsSold(totalItemsSold);
+
+        CustomerSketches sketches = customerSketches != null ? customerSketches.copy() : null;
+        if (sketches != null) {
+            cardinalityMode().applyTo(stats, sketches.customers());
+        } else {
+            // у каждого клиента в byCustomer есть хотя бы один заказ
+            cardinalityMode().applyTo(stats, byCustomer.keySet());
+        }
+
+        stats.setTotalLoyaltyPoints(totalLoyaltyPoints);
+        stats.setRevenueByMonth(revenueByMonthMap);
+        stats.setItemAverageReceipts(itemAverageAccumulator.finish(this::toMajor));
+        stats.setRevenueByStatusRanking(TopMetrics.calculateStatusRevenue(revenueByStatus, ordersByStatus));
+        stats.setSalesByPriceTier(TopMetrics.calculatePriceTierSales(quantityByPriceTier, revenueByPriceTier));
+
+        int capacity = TopSketches.capacityFor(limits);
+        new TopSketches(
+                sketches != null
+                        ? sketches.bySpending()
+                        : TopMetrics.sketch(revenueByCustomer, Map.of(), capacity),
+                sketches != null
+                        ? sketches.byOrders()
+                        : TopMetrics.sketch(ordersByCustomer, revenueByCustomer, capacity),
+                TopMetrics.sketch(itemQuantityByName, itemRevenueByName, capacity),
+                TopMetrics.sketch(revenueByCity, ordersByCity, capacity),
+                TopMetrics.sketch(revenueByState, ordersByState, capacity))
+                .applyTo(stats, limits);
+
+        return stats;
+    }
+
+    private static <K> void mergeTotals(Map<K, Totals> target, Map<K, Totals> source) {
+        source.forEach((key, totals) -> target.merge(key, totals.copy(), Totals::merge));
+    }
+
+    private <K> void splitTotals(Map<K, Totals> source, Map<K, Long> counts, Map<K, Double> revenues) {
+        source.forEach((key, totals) -> {
+            counts.put(key, totals.count);
+            revenues.put(key, toMajor(totals.revenue));
+        });
+    }
+
+    /**
+     * Count (orders or item quantity) and revenue of one key.
+     */
+    static final class Totals {
+        private long count;
+        private double revenue;
+
+        private void add(long count, double revenue) {
+            this.count += count;
+            this.revenue += revenue;
+        }
+
+        private Totals merge(Totals other) {
+            count += other.count;
+            revenue += other.revenue;
+            return this;
+        }
+
+        private Totals copy() {
+            Totals copy = new Totals();
+            copy.count = count;
+            copy.revenue = revenue;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package lab3.statistics.Collectors;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lab3.model.Item;
+import lab3.model.Money;
+
+/**
+ * How revenue amounts are summed by the accumulators created by {@link ReceiptStatisticsCollector}
+ * and by the single-pass aggregators.
+ */
+public enum SummationMode {
+    /**
+     * Line amounts {@code unitPrice * quantity} are summed as they are. Fastest, but floating point
+     * addition is not associative, so the last bits of every revenue total depend on how the receipts
+     * were split and combined. This is the default.
+     */
+    DOUBLE,
+    /**
+     * Every line amount is first rounded to the fixed-point grid of {@code 1 / 4096} (well below a
+     * cent). Sums of grid values are exact while they stay below {@link #EXACT_SUM_LIMIT}, so every
+     * revenue total, average and merge is bit-for-bit the same for any split, batch size, thread
+     * count or combine order. Each line is off by at most {@code 1 / 8192}. A merged item average
+     * misses the receipts of any part that did not report the item (two receipts or fewer there).
+     */
+    FIXED_POINT,
+    /**
+     * Every line amount is {@code unitPriceMinor * quantity} in {@code long} minor units
+     * ({@link Item#getUnitPriceMinor()}), and every sum is kept in minor units until the statistics
+     * are built, when it is converted to major units. The columnar aggregator sums in {@code long}
+     * arrays and the concurrent accumulator keeps its total revenue in a {@code LongAdder}; the
+     * map-keyed sums of the collector accumulators stay {@code double} values holding whole numbers
+     * of minor units, which add exactly below {@code 2^53} (about {@code 9 * 10^13} minor units).
+     * Either way the totals are exact for whole-cent prices and do not depend on splits or combine
+     * order.
+     */
+    MINOR_UNITS;
+
+    static final double FIXED_POINT_SCALE = 4096.0;
+
+    /**
+     * Magnitude up to which sums of {@link #FIXED_POINT} amounts are exact: {@code 2^53} grid units,
+     * about {@code 2.2 * 10^12}.
+     */
+    public static final double EXACT_SUM_LIMIT = 0x1p53 / FIXED_POINT_SCALE;
+
+    /**
+     * Revenue of one receipt line in this mode; in {@link #MINOR_UNITS} the price is rounded to
+     * minor units first.
+     */
+    public double lineAmount(double unitPrice, int quantity) {
+        if (this == MINOR_UNITS) {
+            return Money.toMinor(unitPrice) * quantity;
+        }
+        double amount = unitPrice * quantity;
+        // умножение и деление на степень двойки точны, округляется только rint
+        return this == FIXED_POINT ? Math.rint(amount * FIXED_POINT_SCALE) / FIXED_POINT_SCALE : amount;
+    }
+
+    /**
+     * Revenue of one receipt line in this mode; {@link #MINOR_UNITS} reads the item's price in minor
+     * units, so the line is a {@code long} product.
+     */
+    public double lineAmount(Item item) {
+        return this == MINOR_UNITS
+                ? item.getUnitPriceMinor() * item.getQuantity()
+                : lineAmount(item.getUnitPrice(), item.getQuantity());
+    }
+
+    /**
+     * An amount summed in this mode, in major units: {@link #MINOR_UNITS} sums are converted, the
+     * other modes already sum major units.
+     */
+    public double toMajor(double amount) {
+        return this == MINOR_UNITS ? amount / Money.MINOR_UNITS_PER_MAJOR : amount;
+    }
+
+    /**
+     * {@link #toMajor(double)} for every value; returns {@code amounts} itself unless this is
+     * {@link #MINOR_UNITS}.
+     */
+    public <K> Map<K, Double> toMajor(Map<K, Double> amounts) {
+        if (this != MINOR_UNITS) {
+            return amounts;
+        }
+        Map<K, Double> major = HashMap.newHashMap(amounts.size());
+        amounts.forEach((key, amount) -> major.put(key, toMajor(amount)));
+        return major;
+    }
+}
@@ -0,0 +1,140 @@
+package lab3.statistics.aggregators;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AIMD sizing of {@code Subscription.request(n)} for a single subscriber. The controller keeps a
+ * demand limit, i.e. how many receipts may be requested but not yet processed, and tops the
+ * outstanding demand up to that limit whenever it drains to a quarter of it.
+ *
+ * <p>At every top-up the limit is checked against the target buffer latency: if processing the
+ * whole limit at the measured per-receipt cost would take longer than the target, the limit is
+ * halved, and cut further to what fits into the target (multiplicative decrease); otherwise it
+ * grows by a fixed step (additive increase). While the limit is below half of what the target
+ * allows it doubles instead, so short streams and streams whose cost just dropped reach a useful
+ * batch quickly. The limit thus follows the processing cost when it changes at runtime, and the
+ * upstream never has to buffer much more than {@code targetLatency} worth of receipts for us.
+ *
+ * <p>The controller is driven from the delivering thread only, as Reactive Streams signals are
+ * serial. {@link #metrics()} may be read from any thread.
+ */
+public final class AdaptiveDemandController {
+
+    public static final Duration DEFAULT_TARGET_LATENCY = Duration.ofMillis(50);
+    public static final int DEFAULT_MIN_DEMAND = 1;
+    public static final int DEFAULT_INITIAL_DEMAND = 64;
+    public static final int DEFAULT_MAX_DEMAND = 4096;
+
+    // вес нового окна в скользящем среднем времени обработки
+    private static final double EWMA_WEIGHT = 0.25;
+
+    private final long targetLatencyNanos;
+    private final int minDemand;
+    private final int maxDemand;
+    private final int additiveStep;
+
+    // пишутся только доставляющим потоком; lazySet делает их видимыми для метрик без барьера на каждый чек
+    private final AtomicLong outstanding = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private volatile int limit;
+    private volatile double averageNanos;
+    private long windowReceipts;
+    private long windowNanos;
+
+    public AdaptiveDemandController() {
+        this(DEFAULT_INITIAL_DEMAND, DEFAULT_MIN_DEMAND, DEFAULT_MAX_DEMAND, DEFAULT_TARGET_LATENCY);
+    }
+
+    /**
+     * @param initialDemand size of the first request
+     * @param minDemand lower bound of the limit
+     * @param maxDemand upper bound of the limit
+     * @param targetLatency how long the requested but unprocessed receipts may take to process
+     */
+    public AdaptiveDemandController(int initialDemand, int minDemand, int maxDemand, Duration targetLatency) {
+        if (minDemand <= 0 || maxDemand < minDemand) {
+            throw new IllegalArgumentException("Invalid demand bounds: [" + minDemand + ", " + maxDemand + "]");
+        }
+        if (targetLatency.isNegative() || targetLatency.isZero()) {
+            throw new IllegalArgumentException("targetLatency must be positive: " + targetLatency);
+        }
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.minDemand = minDemand;
+        this.maxDemand = maxDemand;
+        this.limit = Math.clamp(initialDemand, minDemand, maxDemand);
+        this.additiveStep = Math.max(minDemand, limit / 8);
+    }
+
+    /**
+     * Demand to request right after subscribing.
+     */
+    public long initialRequest() {
+        outstanding.lazySet(limit);
+        return limit;
+    }
+
+    /**
+     * Records one delivered receipt and the time it took to process it, and returns how many more
+     * receipts to request now (zero if the outstanding demand is still high enough).
+     */
+    public long onProcessed(long processingNanos) {
+        long remaining = outstanding.get() - 1;
+        delivered.lazySet(delivered.get() + 1);
+        windowReceipts++;
+        windowNanos += processingNanos;
+        if (remaining > limit / 4) {
+            outstanding.lazySet(remaining);
+            return 0;
+        }
+        adjustLimit();
+        long request = Math.max(0, limit - remaining);
+        outstanding.lazySet(remaining + request);
+        return request;
+    }
+
+    public Metrics metrics() {
+        return new Metrics(limit, outstanding.get(), delivered.get(), averageNanos);
+    }
+
+    private void adjustLimit() {
+        double windowAverage = (double) windowNanos / windowReceipts;
+        double average = averageNanos == 0.0
+                ? windowAverage
+                : averageNanos + EWMA_WEIGHT * (windowAverage - averageNanos);
+        averageNanos = average;
+        windowReceipts = 0;
+        windowNanos = 0;
+
+        // сколько чеков укладывается в целевую задержку при текущей стоимости обработки
+        double fitting = average > 0 ? targetLatencyNanos / average : maxDemand;
+        int current = limit;
+        int next;
+        if (current > fitting) {
+            next = (int) Math.min(current / 2, fitting);
+        } else if (current * 2 <= fitting) {
+            next = current * 2;
+        } else {
+            next = current + additiveStep;
+        }
+        limit = Math.clamp(next, minDemand, maxDemand);
+    }
+
+    /**
+     * @param demand current demand limit
+     * @param queueDepth receipts requested from the upstream but not delivered yet, i.e. what the
+     *                   upstream may be buffering on our behalf
+     * @param delivered receipts processed so far
+     * @param averageProcessingNanos smoothed per-receipt processing time
+     */
+    public record Metrics(int demand, long queueDepth, long delivered, double averageProcessingNanos) {
+
+        public double processingRate() {
+            return averageProcessingNanos > 0 ? 1_000_000_000.0 / averageProcessingNanos : 0.0;
+        }
+
+        public Duration bufferLatency() {
+            return Duration.ofNanos((long) (queueDepth * averageProcessingNanos));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package lab3.statistics.aggregators;
+
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import lab3.util.LatencyProfile;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived executor and RxJava {@link Scheduler} for the reactive aggregators. A runtime is
+ * started once, reused across aggregation calls (so worker threads and their JIT state survive)
+ * and closed when the owner shuts down.
+ *
+ * <p>{@link ThreadMode#VIRTUAL} runs every batch on its own virtual thread, which suits the
+ * blocking item name lookups; {@code parallelism} then only limits the number of batches in flight.
+ * The lookups must park for that to pay off, see {@link #latencyProfile()}.
+ */
+public final class AggregationRuntime implements AutoCloseable {
+
+    public enum ThreadMode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    private enum State {
+        NEW,
+        STARTED,
+        CLOSED
+    }
+
+    private static final class SharedHolder {
+        private static final AggregationRuntime INSTANCE =
+                new AggregationRuntime(ThreadMode.PLATFORM, Runtime.getRuntime().availableProcessors(), true).start();
+    }
+
+    private final ThreadMode threadMode;
+    private final int parallelism;
+    private final boolean shared;
+    private State state = State.NEW;
+    private ExecutorService executor;
+    private Scheduler scheduler;
+
+    private AggregationRuntime(ThreadMode threadMode, int parallelism, boolean shared) {
+        this.threadMode = threadMode;
+        this.parallelism = Math.max(1, parallelism);
+        this.shared = shared;
+    }
+
+    public static AggregationRuntime platform(int parallelism) {
+        return new AggregationRuntime(ThreadMode.PLATFORM, parallelism, false);
+    }
+
+    public static AggregationRuntime virtual(int maxConcurrentBatches) {
+        return new AggregationRuntime(ThreadMode.VIRTUAL, maxConcurrentBatches, false);
+    }
+
+    /**
+     * Process-wide runtime with one daemon platform thread per available processor. It is started
+     * lazily on first use and never closed: {@link #close()} on it does nothing, so callers may
+     * treat it like any other runtime.
+     */
+    public static AggregationRuntime shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    public synchronized AggregationRuntime start() {
+        if (state == State.CLOSED) {
+            throw new IllegalStateException("AggregationRuntime is already closed");
+        }
+        if (state == State.NEW) {
+            executor = switch (threadMode) {
+                case PLATFORM -> Executors.newFixedThreadPool(parallelism, daemonThreadFactory());
+                case VIRTUAL -> Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name("aggregation-vt-", 0).factory());
+            };
+            scheduler = Schedulers.from(executor);
+            state = State.STARTED;
+        }
+        return this;
+    }
+
+    public synchronized Scheduler scheduler() {
+        if (state != State.STARTED) {
+            throw new IllegalStateException("AggregationRuntime is " + state + ", call start() first");
+        }
+        return scheduler;
+    }
+
+    public ThreadMode threadMode() {
+        return threadMode;
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * How an item name delay is spent on this runtime: a virtual thread parks and frees its carrier,
+     * while a spinning one would hold the carrier for the whole delay; platform threads spin.
+     */
+    public LatencyProfile latencyProfile() {
+        return threadMode == ThreadMode.VIRTUAL ? LatencyProfile.parking() : LatencyProfile.busySpin();
+    }
+
+    public synchronized boolean isRunning() {
+        return state == State.STARTED;
+    }
+
+    /**
+     * Stops accepting new batches and waits briefly for the running ones to finish. Does nothing for
+     * the {@link #shared()} runtime, which other callers in the process keep using.
+     */
+    @Override
+    public synchronized void close() {
+        if (shared || state == State.CLOSED) {
+            return;
+        }
+        state = State.CLOSED;
+        if (executor == null) {
+            return;
+        }
+        scheduler.shutdown();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "aggregation-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,438 @@
+package lab3.statistics.aggregators;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lab3.model.Money;
+import lab3.model.Receipt;
+import lab3.model.ReceiptStatus;
+import lab3.statistics.Collectors.SummationMode;
+import lab3.statistics.columnar.ReceiptBatch;
+import lab3.statistics.model.CardinalityMode;
+import lab3.statistics.model.ItemAverageReceiptMetrics;
+import lab3.statistics.model.PriceTier;
+import lab3.statistics.model.ReceiptAmountDistribution;
+import lab3.statistics.model.ReceiptStatistics;
+import lab3.statistics.model.TopLimits;
+import lab3.statistics.model.TopMetrics;
+import lab3.statistics.model.TopSketches;
+
+/**
+ * Aggregates a {@link ReceiptBatch} with plain loops over its primitive columns. Every keyed metric
+ * is accumulated into an array indexed by the dictionary id, maps are only built once at the end
+ * for the {@link TopMetrics} calculations. Receipts are visited in order, so the result matches
+ * {@link ReceiptStatisticsIterateCircleAggregator} for the same data.
+ */
+public final class ReceiptStatisticsColumnarAggregator {
+
+    private static final ReceiptStatus[] STATUSES = ReceiptStatus.values();
+    private static final PriceTier[] PRICE_TIERS = PriceTier.values();
+
+    private ReceiptStatisticsColumnarAggregator() {
+    }
+
+    public static ReceiptStatistics aggregate(List<Receipt> receipts) {
+        return aggregate(ReceiptBatch.from(receipts));
+    }
+
+    public static ReceiptStatistics aggregate(ReceiptBatch batch) {
+        return aggregate(batch, SummationMode.DOUBLE);
+    }
+
+    /**
+     * Aggregates the batch with amounts summed in the given mode. In {@link SummationMode#MINOR_UNITS}
+     * every line is a {@code long} product of {@link ReceiptBatch#unitPriceMinor()} and the quantity,
+     * every sum is a {@code long} number of minor units, and amounts are converted to major units
+     * only when the statistics are built, so the result does not depend on the order of the receipts.
+     */
+    public static ReceiptStatistics aggregate(ReceiptBatch batch, SummationMode summationMode) {
+        Totals totals = new Totals(batch);
+        Revenue revenue = summationMode == SummationMode.MINOR_UNITS
+                ? sumMinorUnits(batch, totals).toMajor()
+                : sum(batch, totals, summationMode);
+        return totals.toStatistics(batch, revenue);
+    }
+
+    /**
+     * Same statistics as {@link #aggregate(ReceiptBatch)}, but every amount is summed in minor units
+     * ({@link SummationMode#MINOR_UNITS}) and converted to major units once at the end. For prices in
+     * whole cents, e.g. generated with
+     * {@link lab3.generators.SimpleReceiptGenerator#withMinorUnitPrices()}, every amount is the exact
+     * sum; other prices are rounded to the nearest cent first.
+     */
+    public static ReceiptStatistics aggregateMinorUnits(ReceiptBatch batch) {
+        return aggregate(batch, SummationMode.MINOR_UNITS);
+    }
+
+    private static Revenue sum(ReceiptBatch batch, Totals totals, SummationMode summationMode) {
+        int size = batch.size();
+        int[] itemOffset = batch.itemOffset();
+        double[] unitPrice = batch.unitPrice();
+        int[] quantity = batch.quantity();
+        int[] itemNameId = batch.itemNameId();
+        int[] statusOrdinal = batch.statusOrdinal();
+        int[] month = batch.month();
+        int[] customerId = batch.customerId();
+        int[] cityId = batch.cityId();
+        int[] stateId = batch.stateId();
+        String[] stateNames = batch.stateNames();
+        int[] receiptItems = totals.receiptItems;
+        int[] lineTier = totals.lineTier;
+        Revenue revenue = new Revenue(batch);
+
+        for (int r = 0; r < size; r++) {
+            int uniqueItems = totals.count(r);
+            int from = itemOffset[r];
+
+            double orderTotal = 0;
+            for (int i = from; i < itemOffset[r + 1]; i++) {
+                double lineRevenue = summationMode.lineAmount(unitPrice[i], quantity[i]);
+                orderTotal += lineRevenue;
+                revenue.itemRevenue[itemNameId[i]] += lineRevenue;
+                revenue.byPriceTier[lineTier[i - from]] += lineRevenue;
+            }
+            for (int k = 0; k < uniqueItems; k++) {
+                revenue.itemReceiptTotal[receiptItems[k]] += orderTotal;
+            }
+
+            revenue.total += orderTotal;
+            revenue.min = Math.min(revenue.min, orderTotal);
+            revenue.max = Math.max(revenue.max, orderTotal);
+            revenue.byStatus[statusOrdinal[r]] += orderTotal;
+            revenue.byMonth[month[r]] += orderTotal;
+            revenue.byCustomer[customerId[r]] += orderTotal;
+            revenue.byCity[cityId[r]] += orderTotal;
+            revenue.byState[stateId[r]] += orderTotal;
+            totals.receiptAmounts.add(STATUSES[statusOrdinal[r]], stateNames[stateId[r]], orderTotal);
+        }
+        return revenue;
+    }
+
+    private static MinorUnitRevenue sumMinorUnits(ReceiptBatch batch, Totals totals) {
+        int size = batch.size();
+        int[] itemOffset = batch.itemOffset();
+        long[] unitPriceMinor = batch.unitPriceMinor();
+        int[] quantity = batch.quantity();
+        int[] itemNameId = batch.itemNameId();
+        int[] statusOrdinal = batch.statusOrdinal();
+        int[] month = batch.month();
+        int[] customerId = batch.customerId();
+        int[] cityId = batch.cityId();
+        int[] stateId = batch.stateId();
+        String[] stateNames = batch.stateNames();
+        int[] receiptItems = totals.receiptItems;
+        int[] lineTier = totals.lineTier;
+        MinorUnitRevenue revenue = new MinorUnitRevenue(batch);
+
+        for (int r = 0; r < size; r++) {
+            int uniqueItems = totals.count(r);
+            int from = itemOffset[r];
+
+            // сложение long точное и ассоциативное, порядок чеков на результат не влияет
+            long orderTotal = 0;
+            for (int i = from; i < itemOffset[r + 1]; i++) {
+                long lineRevenue = unitPriceMinor[i] * quantity[i];
+                orderTotal += lineRevenue;
+                revenue.itemRevenue[itemNameId[i]] += lineRevenue;
+                revenue.byPriceTier[lineTier[i - from]] += lineRevenue;
+            }
+            for (int k = 0; k < uniqueItems; k++) {
+                revenue.itemReceiptTotal[receiptItems[k]] += orderTotal;
+            }
+
+            revenue.total += orderTotal;
+            revenue.min = Math.min(revenue.min, orderTotal);
+            revenue.max = Math.max(revenue.max, orderTotal);
+            revenue.byStatus[statusOrdinal[r]] += orderTotal;
+            revenue.byMonth[month[r]] += orderTotal;
+            revenue.byCustomer[customerId[r]] += orderTotal;
+            revenue.byCity[cityId[r]] += orderTotal;
+            revenue.byState[stateId[r]] += orderTotal;
+            totals.receiptAmounts.add(STATUSES[statusOrdinal[r]], stateNames[stateId[r]], Money.toMajor(orderTotal));
+        }
+        return revenue;
+    }
+
+    private static Map<String, Double> toDoubleMap(String[] names, double[] values) {
+        Map<String, Double> result = HashMap.newHashMap(names.length);
+        for (int id = 0; id < names.length; id++) {
+            result.put(names[id], values[id]);
+        }
+        return result;
+    }
+
+    private static Map<String, Long> toLongMap(String[] names, long[] values) {
+        Map<String, Long> result = HashMap.newHashMap(names.length);
+        for (int id = 0; id < names.length; id++) {
+            result.put(names[id], values[id]);
+        }
+        return result;
+    }
+
+    /**
+     * Per-key counts of one pass over a batch, indexed by dictionary id or enum ordinal; they do not
+     * depend on the summation mode. The revenue sums of the pass are kept in {@link Revenue} or
+     * {@link MinorUnitRevenue}.
+     */
+    private static final class Totals {
+
+        private final int[] itemOffset;
+        private final int[] quantity;
+        private final double[] unitPrice;
+        private final int[] itemNameId;
+        private final int[] statusOrdinal;
+        private final int[] month;
+        private final int[] loyaltyPoints;
+        private final int[] customerId;
+        private final int[] cityId;
+        private final int[] stateId;
+
+        long totalItemsSold;
+        long totalLoyaltyPoints;
+
+        final long[] ordersByStatus = new long[STATUSES.length];
+        final long[] ordersByMonth = new long[13];
+        final long[] quantityByPriceTier = new long[PRICE_TIERS.length];
+
+        final long[] itemQuantity;
+        final long[] itemReceiptCount;
+        final int[] itemLastReceipt;
+
+        final long[] ordersByCustomer;
+        final long[] ordersByCity;
+        final long[] ordersByState;
+        final ReceiptAmountDistribution receiptAmounts = new ReceiptAmountDistribution();
+
+        // результаты count для текущего чека: уникальные товары и ценовой уровень каждой позиции
+        final int[] receiptItems;
+        final int[] lineTier;
+
+        Totals(ReceiptBatch batch) {
+            itemOffset = batch.itemOffset();
+            quantity = batch.quantity();
+            unitPrice = batch.unitPrice();
+            itemNameId = batch.itemNameId();
+            statusOrdinal = batch.statusOrdinal();
+            month = batch.month();
+            loyaltyPoints = batch.loyaltyPoints();
+            customerId = batch.customerId();
+            cityId = batch.cityId();
+            stateId = batch.stateId();
+
+            int itemKeys = batch.itemNames().length;
+            itemQuantity = new long[itemKeys];
+            itemReceiptCount = new long[itemKeys];
+            itemLastReceipt = new int[itemKeys];
+            Arrays.fill(itemLastReceipt, -1);
+
+            ordersByCustomer = new long[batch.customerNames().length];
+            ordersByCity = new long[batch.cityNames().length];
+            ordersByState = new long[batch.stateNames().length];
+
+            int maxLines = 0;
+            for (int r = 0; r < batch.size(); r++) {
+                maxLines = Math.max(maxLines, itemOffset[r + 1] - itemOffset[r]);
+            }
+            receiptItems = new int[maxLines];
+            lineTier = new int[maxLines];
+        }
+
+        /**
+         * Counts receipt {@code r}, fills {@link #lineTier} for its lines and {@link #receiptItems}
+         * with the ids of its distinct items, and returns how many distinct items it has.
+         */
+        int count(int r) {
+            int from = itemOffset[r];
+            int to = itemOffset[r + 1];
+            int uniqueItems = 0;
+            for (int i = from; i < to; i++) {
+                int itemQuantityInLine = quantity[i];
+                totalItemsSold += itemQuantityInLine;
+
+                int itemId = itemNameId[i];
+                itemQuantity[itemId] += itemQuantityInLine;
+                // средний чек считается по уникальным товарам чека
+                if (itemLastReceipt[itemId] != r) {
+                    itemLastReceipt[itemId] = r;
+                    itemReceiptCount[itemId]++;
+                    receiptItems[uniqueItems++] = itemId;
+                }
+
+                int tier = PriceTier.fromUnitPrice(unitPrice[i]).ordinal();
+                lineTier[i - from] = tier;
+                quantityByPriceTier[tier] += itemQuantityInLine;
+            }
+
+            totalLoyaltyPoints += loyaltyPoints[r];
+            ordersByStatus[statusOrdinal[r]]++;
+            ordersByMonth[month[r]]++;
+            ordersByCustomer[customerId[r]]++;
+            ordersByCity[cityId[r]]++;
+            ordersByState[stateId[r]]++;
+            return uniqueItems;
+        }
+
+        ReceiptStatistics toStatistics(ReceiptBatch batch, Revenue revenue) {
+            int size = batch.size();
+
+            Map<ReceiptStatus, Long> ordersByStatusMap = new EnumMap<>(ReceiptStatus.class);
+            Map<ReceiptStatus, Double> revenueByStatusMap = new EnumMap<>(ReceiptStatus.class);
+            for (ReceiptStatus status : STATUSES) {
+                if (ordersByStatus[status.ordinal()] > 0) {
+                    ordersByStatusMap.put(status, ordersByStatus[status.ordinal()]);
+                    revenueByStatusMap.put(status, revenue.byStatus[status.ordinal()]);
+                }
+            }
+
+            Map<Integer, Double> revenueByMonthMap = new HashMap<>();
+            for (int m = 1; m < ordersByMonth.length; m++) {
+                if (ordersByMonth[m] > 0) {
+                    revenueByMonthMap.put(m, revenue.byMonth[m]);
+                }
+            }
+
+            Map<PriceTier, Long> quantityByPriceTierMap = new EnumMap<>(PriceTier.class);
+            Map<PriceTier, Double> revenueByPriceTierMap = new EnumMap<>(PriceTier.class);
+            for (PriceTier tier : PRICE_TIERS) {
+                if (quantityByPriceTier[tier.ordinal()] > 0) {
+                    quantityByPriceTierMap.put(tier, quantityByPriceTier[tier.ordinal()]);
+                    revenueByPriceTierMap.put(tier, revenue.byPriceTier[tier.ordinal()]);
+                }
+            }
+
+            ReceiptStatistics stats = new ReceiptStatistics();
+            stats.setTotalOrders(size);
+            stats.setTotalRevenue(revenue.total);
+            stats.setAverageReceiptAmount(size > 0 ? revenue.total / size : 0);
+            stats.setMinReceiptAmount(size > 0 ? revenue.min : 0);
+            stats.setMaxReceiptAmount(size > 0 ? revenue.max : 0);
+            receiptAmounts.applyTo(stats);
+
+            stats.setOrdersByStatus(ordersByStatusMap);
+            stats.setTotalItemsSold(totalItemsSold);
+
+            // словарь клиентов содержит только тех, у кого есть хотя бы один заказ
+            CardinalityMode.exact().applyTo(stats, Arrays.asList(batch.customerNames()));
+
+            stats.setTotalLoyaltyPoints(totalLoyaltyPoints);
+            stats.setRevenueByMonth(revenueByMonthMap);
+
+            Map<String, Double> revenueByCustomerMap = toDoubleMap(batch.customerNames(), revenue.byCustomer);
+            stats.setItemAverageReceipts(ItemAverageReceiptMetrics.fromTotals(
+                    batch.itemNames(), itemReceiptCount, revenue.itemReceiptTotal));
+            stats.setRevenueByStatusRanking(TopMetrics.calculateStatusRevenue(revenueByStatusMap, ordersByStatusMap));
+            stats.setSalesByPriceTier(
+                    TopMetrics.calculatePriceTierSales(quantityByPriceTierMap, revenueByPriceTierMap));
+
+            TopLimits limits = TopLimits.defaults();
+            int capacity = TopSketches.capacityFor(limits);
+            new TopSketches(
+                    TopMetrics.sketch(revenueByCustomerMap, Map.of(), capacity),
+                    TopMetrics.sketch(toLongMap(batch.customerNames(), ordersByCustomer), revenueByCustomerMap, capacity),
+                    TopMetrics.sketch(
+                            toLongMap(batch.itemNames(), itemQuantity),
+                            toDoubleMap(batch.itemNames(), revenue.itemRevenue),
+                            capacity),
+                    TopMetrics.sketch(
+                            toDoubleMap(batch.cityNames(), revenue.byCity),
+                            toLongMap(batch.cityNames(), ordersByCity),
+                            capacity),
+                    TopMetrics.sketch(
+                            toDoubleMap(batch.stateNames(), revenue.byState),
+                            toLongMap(batch.stateNames(), ordersByState),
+                            capacity))
+                    .applyTo(stats, limits);
+
+            return stats;
+        }
+    }
+
+    /**
+     * Revenue sums of one pass in major units, indexed like the counts in {@link Totals}.
+     */
+    private static final class Revenue {
+
+        double total;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        final double[] byStatus;
+        final double[] byMonth;
+        final double[] byPriceTier;
+        final double[] itemRevenue;
+        final double[] itemReceiptTotal;
+        final double[] byCustomer;
+        final double[] byCity;
+        final double[] byState;
+
+        Revenue(ReceiptBatch batch) {
+            this(new double[STATUSES.length],
+                    new double[13],
+                    new double[PRICE_TIERS.length],
+                    new double[batch.itemNames().length],
+                    new double[batch.itemNames().length],
+                    new double[batch.customerNames().length],
+                    new double[batch.cityNames().length],
+                    new double[batch.stateNames().length]);
+        }
+
+        Revenue(double[] byStatus, double[] byMonth, double[] byPriceTier, double[] itemRevenue,
+                double[] itemReceiptTotal, double[] byCustomer, double[] byCity, double[] byState) {
+            this.byStatus = byStatus;
+            this.byMonth = byMonth;
+            this.byPriceTier = byPriceTier;
+            this.itemRevenue = itemRevenue;
+            this.itemReceiptTotal = itemReceiptTotal;
+            this.byCustomer = byCustomer;
+            this.byCity = byCity;
+            this.byState = byState;
+        }
+    }
+
+    /**
+     * Revenue sums of one pass in {@code long} minor units; {@link #toMajor()} converts them once,
+     * when the statistics are built.
+     */
+    private static final class MinorUnitRevenue {
+
+        long total;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        final long[] byStatus = new long[STATUSES.length];
+        final long[] byMonth = new long[13];
+        final long[] byPriceTier = new long[PRICE_TIERS.length];
+        final long[] itemRevenue;
+        final long[] itemReceiptTotal;
+        final long[] byCustomer;
+        final long[] byCity;
+        final long[] byState;
+
+        MinorUnitRevenue(ReceiptBatch batch) {
+            itemRevenue = new long[batch.itemNames().length];
+            itemReceiptTotal = new long[batch.itemNames().length];
+            byCustomer = new long[batch.customerNames().length];
+            byCity = new long[batch.cityNames().length];
+            byState = new long[batch.stateNames().length];
+        }
+
+        Revenue toMajor() {
+            Revenue revenue = new Revenue(
+                    Money.toMajor(byStatus),
+                    Money.toMajor(byMonth),
+                    Money.toMajor(byPriceTier),
+                    Money.toMajor(itemRevenue),
+                    Money.toMajor(itemReceiptTotal),
+                    Money.toMajor(byCustomer),
+                    Money.toMajor(byCity),
+                    Money.toMajor(byState));
+            revenue.total = Money.toMajor(total);
+            revenue.min = Money.toMajor(min);
+            revenue.max = Money.toMajor(max);
+            return revenue;
+        }
+    }
+}
@@ -10,16 +10,25 @@ import java.util.Set;
 import lab3.model.Item;
 import lab3.model.Receipt;
 import lab3.model.ReceiptStatus;
+import lab3.statistics.Collectors.SummationMode;
+import lab3.statistics.model.CardinalityMode;
 import lab3.statistics.model.ItemAverageReceiptMetrics;
 import lab3.statistics.model.PriceTier;
+import lab3.statistics.model.ReceiptAmountDistribution;
 import lab3.statistics.model.ReceiptStatistics;
 import lab3.statistics.model.TotalAverage;
 import lab3.statistics.model.TotalAverageMetrics;
+import lab3.statistics.model.TopLimits;
 import lab3.statistics.model.TopMetrics;
+import lab3.statistics.model.TopSketches;
 
 public class ReceiptStatisticsIterateCircleAggregator {
 
     public static ReceiptStatistics aggregate(List<Receipt> receipts) {
+        return aggregate(receipts, SummationMode.DOUBLE);
+    }
+
+    public static ReceiptStatistics aggregate(List<Receipt> receipts, SummationMode summationMode) {
         ReceiptStatistics stats = new ReceiptStatistics();
 
         // агрегаты
@@ -49,6 +58,7 @@ public class ReceiptStatisticsIterateCircleAggregator {
                 ItemAverageReceiptMetrics.newAccumulator();
         TotalAverageMetrics.TotalAverageAccumulator totalAverageAccumulator =
                 TotalAverageMetrics.newAccumulator();
+        ReceiptAmountDistribution receiptAmounts = new ReceiptAmountDistribution();
 
         for (Receipt r : receipts) {
             totalOrders++;
@@ -57,7 +67,7 @@ public class ReceiptStatisticsIterateCircleAggregator {
             Set<String> itemsInReceipt = new HashSet<>();
             for (Item item : r.getItems()) {
                 totalItemsSold += item.getQuantity();
-                double itemRevenue = item.getUnitPrice() * item.getQuantity();
+                double itemRevenue = summationMode.lineAmount(item);
                 orderTotal += itemRevenue;
                 String itemName = item.getName();
                 itemQuantityByName.merge(itemName, (long) item.getQuantity(), Long::sum);
@@ -71,6 +81,7 @@ public class ReceiptStatisticsIterateCircleAggregator {
 
             itemAverageAccumulator.addResolved(orderTotal, itemsInReceipt);
             totalAverageAccumulator.addResolved(orderTotal);
+            receiptAmounts.add(r.getStatus(), r.getShippingAddress().state(), summationMode.toMajor(orderTotal));
 
             totalRevenue += orderTotal;
             minReceipt = Math.min(minReceipt, orderTotal);
@@ -99,28 +110,38 @@ public class ReceiptStatisticsIterateCircleAggregator {
             ordersByState.merge(state, 1L, Long::sum);
         }
 
+        // в MINOR_UNITS суммы копились в центах, переводим их в основные единицы один раз
+        double revenue = summationMode.toMajor(totalRevenue);
         stats.setTotalOrders(totalOrders);
-        stats.setTotalRevenue(totalRevenue);
-        stats.setAverageReceiptAmount(totalOrders > 0 ? totalRevenue / totalOrders : 0);
-        stats.setMinReceiptAmount(totalOrders > 0 ? minReceipt : 0);
-        stats.setMaxReceiptAmount(totalOrders > 0 ? maxReceipt : 0);
+        stats.setTotalRevenue(revenue);
+        stats.setAverageReceiptAmount(totalOrders > 0 ? revenue / totalOrders : 0);
+        stats.setMinReceiptAmount(totalOrders > 0 ? summationMode.toMajor(minReceipt) : 0);
+        stats.setMaxReceiptAmount(totalOrders > 0 ? summationMode.toMajor(maxReceipt) : 0);
+        receiptAmounts.applyTo(stats);
 
         stats.setOrdersByStatus(ordersByStatus);
         stats.setTotalItemsSold(totalItemsSold);
 
-        stats.setUniqueCustomers(uniqueCustomers.size());
+        CardinalityMode.exact().applyTo(stats, uniqueCustomers);
 
         stats.setTotalLoyaltyPoints(totalLoyaltyPoints);
-        stats.setRevenueByMonth(revenueByMonth);
-        stats.setTopCustomersBySpending(TopMetrics.calculateTopCustomers(revenueByCustomer));
-        stats.setTopCustomersByOrderCount(
-                TopMetrics.calculateTopCustomersByOrders(ordersByCustomer, revenueByCustomer));
-        stats.setTopItemsByQuantity(TopMetrics.calculateTopItems(itemQuantityByName, itemRevenueByName));
-        stats.setItemAverageReceipts(itemAverageAccumulator.finish());
-        stats.setTopCitiesByRevenue(TopMetrics.calculateTopCities(revenueByCity, ordersByCity));
-        stats.setRevenueByStatusRanking(TopMetrics.calculateStatusRevenue(revenueByStatus, ordersByStatus));
-        stats.setSalesByPriceTier(TopMetrics.calculatePriceTierSales(quantityByPriceTier, revenueByPriceTier));
-        stats.setTopStatesByRevenue(TopMetrics.calculateTopStates(revenueByState, ordersByState));
+        stats.setRevenueByMonth(summationMode.toMajor(revenueByMonth));
+        stats.setItemAverageReceipts(itemAverageAccumulator.finish(summationMode::toMajor));
+        stats.setRevenueByStatusRanking(
+                TopMetrics.calculateStatusRevenue(summationMode.toMajor(revenueByStatus), ordersByStatus));
+        stats.setSalesByPriceTier(
+                TopMetrics.calculatePriceTierSales(quantityByPriceTier, summationMode.toMajor(revenueByPriceTier)));
+
+        Map<String, Double> revenueByCustomerMajor = summationMode.toMajor(revenueByCustomer);
+        TopLimits limits = TopLimits.defaults();
+        int capacity = TopSketches.capacityFor(limits);
+        new TopSketches(
+                TopMetrics.sketch(revenueByCustomerMajor, Map.of(), capacity),
+                TopMetrics.sketch(ordersByCustomer, revenueByCustomerMajor, capacity),
+                TopMetrics.sketch(itemQuantityByName, summationMode.toMajor(itemRevenueByName), capacity),
+                TopMetrics.sketch(summationMode.toMajor(revenueByCity), ordersByCity, capacity),
+                TopMetrics.sketch(summationMode.toMajor(revenueByState), ordersByState, capacity))
+                .applyTo(stats, limits);
 
         return stats;
     }
@@ -0,0 +1,78 @@
+package lab3.statistics.aggregators;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.ReceiptStatisticsAccumulator;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.model.ReceiptStatistics;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Streaming aggregation over parallel rails: the receipt {@link Flowable} is split round-robin into
+ * {@code rails} rails with {@code parallel(rails).runOn(scheduler)}, every rail folds its receipts
+ * into its own {@link ReceiptStatisticsAccumulator}, and the per-rail accumulators are merged with
+ * {@code combine} in {@code sequential().reduce} and finished once. This is the streaming counterpart
+ * of {@code receipts.parallelStream().collect(...)}.
+ *
+ * <p>{@code prefetch} is how many receipts each rail requests ahead from the source and keeps queued;
+ * larger values amortise hand-offs between threads, smaller ones bound the memory held in flight.
+ */
+public final class ReceiptStatisticsParallelFlowableAggregator {
+
+    public static final int DEFAULT_PREFETCH = 128;
+
+    private ReceiptStatisticsParallelFlowableAggregator() {
+    }
+
+    public static ReceiptStatistics aggregate(List<Receipt> receipts, long itemNameDelayMillis) {
+        return aggregate(receipts, itemNameDelayMillis, Runtime.getRuntime().availableProcessors(), DEFAULT_PREFETCH);
+    }
+
+    public static ReceiptStatistics aggregate(List<Receipt> receipts, long itemNameDelayMillis, int rails, int prefetch) {
+        if (receipts == null || receipts.isEmpty()) {
+            return new ReceiptStatistics();
+        }
+        return aggregate(
+                Flowable.fromIterable(receipts),
+                ReceiptStatisticsCollector.withItemNameDelay(itemNameDelayMillis),
+                rails,
+                prefetch,
+                Schedulers.computation())
+                .blockingGet();
+    }
+
+    public static Single<ReceiptStatistics> aggregate(
+            Flowable<Receipt> receipts,
+            ReceiptStatisticsCollector collector,
+            int rails,
+            int prefetch,
+            Scheduler scheduler) {
+
+        if (rails <= 0 || prefetch <= 0) {
+            throw new IllegalArgumentException("rails and prefetch must be positive: " + rails + ", " + prefetch);
+        }
+        Supplier<ReceiptStatisticsAccumulator> supplier = collector.supplier();
+        BiConsumer<ReceiptStatisticsAccumulator, Receipt> accumulator = collector.accumulator();
+        BinaryOperator<ReceiptStatisticsAccumulator> combiner = collector.combiner();
+
+        // у каждой рельсы свой аккумулятор, поэтому внутри рельсы синхронизация не нужна;
+        // пустой поток даёт пустые аккумуляторы, и reduceWith вернёт пустую статистику
+        return receipts
+                .parallel(rails, prefetch)
+                .runOn(scheduler, prefetch)
+                .reduce(supplier::get, (container, receipt) -> {
+                    accumulator.accept(container, receipt);
+                    return container;
+                })
+                .sequential()
+                .reduceWith(supplier::get, combiner::apply)
+                .map(collector.finisher()::apply);
+    }
+}
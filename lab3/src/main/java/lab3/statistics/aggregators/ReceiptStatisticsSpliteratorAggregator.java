@@ -5,6 +5,8 @@ import java.util.Spliterator;
 import java.util.stream.StreamSupport;
 
 import lab3.model.Receipt;
+import lab3.statistics.Collectors.AccumulatorMode;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
 import lab3.statistics.model.ReceiptStatistics;
 import lab3.statistics.spliterator.ReceiptSpliterator;
 
@@ -29,4 +31,30 @@ public final class ReceiptStatisticsSpliteratorAggregator {
                 StreamSupport.stream(spliterator, true),
                 itemNameDelayMillis);
     }
+
+    public static ReceiptStatistics aggregateParallel(
+            List<Receipt> receipts,
+            long itemNameDelayMillis,
+            int minimumBatchSize,
+            AccumulatorMode mode) {
+
+        Spliterator<Receipt> spliterator = new ReceiptSpliterator(receipts, minimumBatchSize);
+        return ReceiptStatisticsStreamAggregator.collect(
+                StreamSupport.stream(spliterator, true),
+                itemNameDelayMillis,
+                mode);
+    }
+
+    /**
+     * Parallel aggregation with the given collector over batches of at least {@code minimumBatchSize}
+     * receipts, e.g. with {@code SummationMode.FIXED_POINT} for totals that do not depend on the batch size.
+     */
+    public static ReceiptStatistics aggregateParallel(
+            List<Receipt> receipts,
+            int minimumBatchSize,
+            ReceiptStatisticsCollector collector) {
+
+        Spliterator<Receipt> spliterator = new ReceiptSpliterator(receipts, minimumBatchSize);
+        return StreamSupport.stream(spliterator, true).collect(collector);
+    }
 }
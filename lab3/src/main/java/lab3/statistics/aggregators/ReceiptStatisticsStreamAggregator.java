@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.stream.Stream;
 
 import lab3.model.Receipt;
+import lab3.statistics.Collectors.AccumulatorMode;
 import lab3.statistics.Collectors.ReceiptStatisticsCollector;
 import lab3.statistics.model.ReceiptStatistics;
 
@@ -28,10 +29,21 @@ public final class ReceiptStatisticsStreamAggregator {
         return collect(receipts.parallelStream(), itemNameDelayMillis);
     }
 
+    public static ReceiptStatistics aggregateParallel(
+            List<Receipt> receipts,
+            long itemNameDelayMillis,
+            AccumulatorMode mode) {
+        return collect(receipts.parallelStream(), itemNameDelayMillis, mode);
+    }
+
     static ReceiptStatistics collect(Stream<Receipt> stream, long itemNameDelayMillis) {
         return stream.collect(ReceiptStatisticsCollector.withItemNameDelay(itemNameDelayMillis));
     }
 
+    static ReceiptStatistics collect(Stream<Receipt> stream, long itemNameDelayMillis, AccumulatorMode mode) {
+        return stream.collect(ReceiptStatisticsCollector.withItemNameDelay(itemNameDelayMillis).withMode(mode));
+    }
+
     static ReceiptStatistics collect(Stream<Receipt> stream) {
         return collect(stream, 0L);
     }
@@ -0,0 +1,127 @@
+package lab3.statistics.aggregators;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.ReceiptStatisticsAccumulator;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.model.ReceiptStatistics;
+
+/**
+ * Backpressured subscriber that folds every receipt into a single {@link ReceiptStatisticsAccumulator}
+ * and finishes it once, in {@code onComplete}. The result is published through {@link #result()}.
+ *
+ * <p>Demand is sized by an {@link AdaptiveDemandController} from the measured processing time of
+ * each receipt: it grows while the requested receipts can be processed within the target latency
+ * and shrinks when the per-receipt cost (e.g. the item name delay) goes up, so the upstream neither
+ * starves us nor has to buffer an unbounded backlog.
+ */
+public class ReceiptStatisticsSubscriber implements Subscriber<Receipt> {
+
+    private final ReceiptStatisticsCollector collector;
+    private final BiConsumer<ReceiptStatisticsAccumulator, Receipt> accumulator;
+    private final AdaptiveDemandController demand;
+    private final CompletableFuture<ReceiptStatistics> result = new CompletableFuture<>();
+
+    private Subscription subscription;
+    private ReceiptStatisticsAccumulator container;
+    private long received;
+    private long startNanos;
+    private long finishNanos;
+
+    public ReceiptStatisticsSubscriber(ReceiptStatisticsCollector collector) {
+        this(collector, new AdaptiveDemandController());
+    }
+
+    public ReceiptStatisticsSubscriber(ReceiptStatisticsCollector collector, AdaptiveDemandController demand) {
+        this.collector = Objects.requireNonNull(collector, "collector");
+        this.accumulator = collector.accumulator();
+        this.demand = Objects.requireNonNull(demand, "demand");
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (subscription != null) {
+            s.cancel(); // правило 2.5: вторая подписка отменяется
+            return;
+        }
+        subscription = s;
+        container = collector.supplier().get();
+        startNanos = System.nanoTime();
+        s.request(demand.initialRequest());
+    }
+
+    @Override
+    public void onNext(Receipt receipt) {
+        if (result.isDone()) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            accumulator.accept(container, receipt);
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            onError(e);
+            return;
+        }
+        received++;
+        long request = demand.onProcessed(System.nanoTime() - started);
+        if (request > 0) {
+            subscription.request(request);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (result.isDone()) {
+            return;
+        }
+        finishNanos = System.nanoTime();
+        container = null;
+        result.completeExceptionally(t);
+    }
+
+    @Override
+    public void onComplete() {
+        if (result.isDone()) {
+            return;
+        }
+        finishNanos = System.nanoTime();
+        ReceiptStatistics statistics = collector.finisher().apply(container);
+        container = null;
+        result.complete(statistics);
+    }
+
+    /**
+     * Completes with the statistics of all received receipts, or exceptionally if the stream failed.
+     */
+    public CompletableFuture<ReceiptStatistics> result() {
+        return result;
+    }
+
+    /**
+     * Receipts processed so far. Like the other metrics it is meant to be read after completion or
+     * from the delivering thread.
+     */
+    public long receivedCount() {
+        return received;
+    }
+
+    /**
+     * Current demand, queue depth and processing rate; safe to read from any thread.
+     */
+    public AdaptiveDemandController.Metrics demandMetrics() {
+        return demand.metrics();
+    }
+
+    public double receiptsPerSecond() {
+        long end = finishNanos != 0 ? finishNanos : System.nanoTime();
+        long elapsed = end - startNanos;
+        return elapsed > 0 ? received * 1_000_000_000.0 / elapsed : 0.0;
+    }
+}
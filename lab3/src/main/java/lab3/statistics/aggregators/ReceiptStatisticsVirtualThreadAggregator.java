@@ -0,0 +1,93 @@
+package lab3.statistics.aggregators;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import lab3.model.Item;
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.model.ReceiptStatistics;
+
+/**
+ * Aggregator for latency-bound item name resolution. Every line item's name is looked up on its
+ * own virtual thread, with at most {@code maxInFlight} lookups running at once, and only then are
+ * the receipts aggregated with the already resolved names. Unlike parallel streams the number of
+ * concurrent lookups is not capped by the {@code ForkJoinPool} parallelism, so blocking lookups
+ * overlap far beyond the core count.
+ */
+public final class ReceiptStatisticsVirtualThreadAggregator {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    private ReceiptStatisticsVirtualThreadAggregator() {
+    }
+
+    public static ReceiptStatistics aggregate(List<Receipt> receipts, long itemNameDelayMillis) {
+        return aggregate(receipts, itemNameDelayMillis, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Resolves names through the blocking {@link Item#awaitName(long)} lookup.
+     */
+    public static ReceiptStatistics aggregate(List<Receipt> receipts, long itemNameDelayMillis, int maxInFlight) {
+        return aggregate(receipts, item -> item.awaitName(itemNameDelayMillis), maxInFlight);
+    }
+
+    public static ReceiptStatistics aggregate(
+            List<Receipt> receipts,
+            Function<Item, String> itemNameLookup,
+            int maxInFlight) {
+        if (receipts == null || receipts.isEmpty()) {
+            return new ReceiptStatistics();
+        }
+        Map<Item, String> resolvedNames = resolveNames(receipts, itemNameLookup, maxInFlight);
+        return receipts.parallelStream()
+                .collect(ReceiptStatisticsCollector.withItemNameResolver(resolvedNames::get));
+    }
+
+    private static Map<Item, String> resolveNames(
+            List<Receipt> receipts,
+            Function<Item, String> itemNameLookup,
+            int maxInFlight) {
+        Objects.requireNonNull(itemNameLookup, "itemNameLookup");
+        List<Item> items = receipts.stream()
+                .flatMap(receipt -> receipt.getItems().stream())
+                .toList();
+        String[] names = new String[items.size()];
+        Semaphore inFlight = new Semaphore(Math.max(1, maxInFlight));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // close() дожидается всех задач, поэтому записи в names видны после выхода из try
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < names.length && failure.get() == null; i++) {
+                int index = i;
+                inFlight.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        names[index] = itemNameLookup.apply(items.get(index));
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Item name lookup failed", failure.get());
+        }
+
+        Map<Item, String> resolvedNames = new IdentityHashMap<>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            resolvedNames.put(items.get(i), names[i]);
+        }
+        return resolvedNames;
+    }
+}
@@ -0,0 +1,186 @@
+package lab3.statistics.aggregators;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.reactivestreams.Publisher;
+
+import lab3.model.Receipt;
+import lab3.statistics.Collectors.ReceiptStatisticsAccumulator;
+import lab3.statistics.Collectors.ReceiptStatisticsCollector;
+import lab3.statistics.model.ReceiptStatistics;
+import lab3.statistics.model.WindowedReceiptStatistics;
+
+/**
+ * Event-time windows over a {@code Flowable<Receipt>}: {@code receipts.compose(operator)} emits one
+ * {@link WindowedReceiptStatistics} per tumbling or sliding window that received receipts, keyed on
+ * {@link Receipt#getDate()} (interpreted as UTC).
+ *
+ * <p>Receipts are accumulated into panes of one slide length. A window is emitted once the
+ * watermark (the largest event time seen minus the allowed lateness) reaches its end, by combining
+ * its panes into a fresh accumulator; panes no later window needs are dropped at the same time.
+ * Memory is therefore bounded by the panes of the open windows, not by the stream length.
+ * Receipts older than the watermark (and receipts without a date) are late: they are passed to the
+ * {@linkplain #onLateReceipt late receipt handler} and not counted. Remaining windows are emitted
+ * when the upstream completes.
+ */
+public final class WindowedReceiptStatisticsOperator
+        implements FlowableTransformer<Receipt, WindowedReceiptStatistics> {
+
+    private final long sizeMillis;
+    private final long slideMillis;
+    private final long allowedLatenessMillis;
+    private final ReceiptStatisticsCollector collector;
+    private final Consumer<Receipt> lateReceiptHandler;
+
+    private WindowedReceiptStatisticsOperator(
+            long sizeMillis,
+            long slideMillis,
+            long allowedLatenessMillis,
+            ReceiptStatisticsCollector collector,
+            Consumer<Receipt> lateReceiptHandler) {
+        if (slideMillis <= 0 || sizeMillis < slideMillis || sizeMillis % slideMillis != 0) {
+            throw new IllegalArgumentException(
+                    "Window size must be a positive multiple of the slide: " + sizeMillis + " / " + slideMillis);
+        }
+        this.sizeMillis = sizeMillis;
+        this.slideMillis = slideMillis;
+        this.allowedLatenessMillis = Math.max(0L, allowedLatenessMillis);
+        this.collector = Objects.requireNonNull(collector, "collector");
+        this.lateReceiptHandler = Objects.requireNonNull(lateReceiptHandler, "lateReceiptHandler");
+    }
+
+    public static WindowedReceiptStatisticsOperator tumbling(Duration size) {
+        return sliding(size, size);
+    }
+
+    /**
+     * Windows of length {@code size} starting every {@code slide}; {@code size} must be a multiple of {@code slide}.
+     */
+    public static WindowedReceiptStatisticsOperator sliding(Duration size, Duration slide) {
+        return new WindowedReceiptStatisticsOperator(
+                size.toMillis(), slide.toMillis(), 0L, ReceiptStatisticsCollector.toStatistics(), receipt -> { });
+    }
+
+    public WindowedReceiptStatisticsOperator withAllowedLateness(Duration allowedLateness) {
+        return new WindowedReceiptStatisticsOperator(
+                sizeMillis, slideMillis, allowedLateness.toMillis(), collector, lateReceiptHandler);
+    }
+
+    public WindowedReceiptStatisticsOperator withCollector(ReceiptStatisticsCollector collector) {
+        return new WindowedReceiptStatisticsOperator(
+                sizeMillis, slideMillis, allowedLatenessMillis, collector, lateReceiptHandler);
+    }
+
+    public WindowedReceiptStatisticsOperator onLateReceipt(Consumer<Receipt> lateReceiptHandler) {
+        return new WindowedReceiptStatisticsOperator(
+                sizeMillis, slideMillis, allowedLatenessMillis, collector, lateReceiptHandler);
+    }
+
+    @Override
+    public Publisher<WindowedReceiptStatistics> apply(Flowable<Receipt> upstream) {
+        // состояние окон своё у каждой подписки
+        return Flowable.defer(() -> {
+            WindowState state = new WindowState();
+            return upstream.concatMapIterable(state::onReceipt)
+                    .concatWith(Flowable.fromIterable(() -> state.onComplete().iterator()));
+        });
+    }
+
+    /**
+     * Pane bookkeeping of one subscription. Reactive Streams serialise {@code onNext} calls, so it
+     * needs no locking.
+     */
+    final class WindowState {
+        private final Supplier<ReceiptStatisticsAccumulator> supplier = collector.supplier();
+        private final BiConsumer<ReceiptStatisticsAccumulator, Receipt> accumulator = collector.accumulator();
+        private final BinaryOperator<ReceiptStatisticsAccumulator> combiner = collector.combiner();
+        private final Function<ReceiptStatisticsAccumulator, ReceiptStatistics> finisher = collector.finisher();
+
+        private final NavigableMap<Long, ReceiptStatisticsAccumulator> panes = new TreeMap<>();
+        private long maxEventTime = Long.MIN_VALUE;
+        private long watermark = Long.MIN_VALUE;
+        private boolean started;
+        private long nextWindowStart;
+
+        List<WindowedReceiptStatistics> onReceipt(Receipt receipt) {
+            LocalDateTime date = receipt.getDate();
+            if (date == null) {
+                lateReceiptHandler.accept(receipt);
+                return List.of();
+            }
+            long eventTime = date.toInstant(ZoneOffset.UTC).toEpochMilli();
+            if (eventTime < watermark) {
+                lateReceiptHandler.accept(receipt);
+                return List.of();
+            }
+            long pane = Math.floorDiv(eventTime, slideMillis) * slideMillis;
+            long firstWindow = pane - sizeMillis + slideMillis;
+            // окна, начинающиеся с firstWindow, ещё не закрыты: eventTime >= watermark
+            nextWindowStart = started ? Math.min(nextWindowStart, firstWindow) : firstWindow;
+            started = true;
+            accumulator.accept(panes.computeIfAbsent(pane, start -> supplier.get()), receipt);
+
+            if (eventTime > maxEventTime) {
+                maxEventTime = eventTime;
+                watermark = Math.max(watermark, eventTime - allowedLatenessMillis);
+                return emitUpTo(watermark);
+            }
+            return List.of();
+        }
+
+        List<WindowedReceiptStatistics> onComplete() {
+            return emitUpTo(Long.MAX_VALUE);
+        }
+
+        /**
+         * Emits every window with data whose end is not after {@code watermark}, in start order.
+         */
+        private List<WindowedReceiptStatistics> emitUpTo(long watermark) {
+            List<WindowedReceiptStatistics> closed = new ArrayList<>();
+            while (!panes.isEmpty() && nextWindowStart <= watermark - sizeMillis) {
+                long windowEnd = nextWindowStart + sizeMillis;
+                NavigableMap<Long, ReceiptStatisticsAccumulator> windowPanes =
+                        panes.subMap(nextWindowStart, true, windowEnd, false);
+                if (windowPanes.isEmpty()) {
+                    // пропускаем пустые окна, но не дальше первого ещё открытого
+                    long firstOpenWindow = Math.floorDiv(watermark - sizeMillis, slideMillis) * slideMillis + slideMillis;
+                    nextWindowStart = Math.min(panes.firstKey() - sizeMillis + slideMillis, firstOpenWindow);
+                } else {
+                    ReceiptStatisticsAccumulator merged = supplier.get();
+                    for (ReceiptStatisticsAccumulator pane : windowPanes.values()) {
+                        merged = combiner.apply(merged, pane);
+                    }
+                    closed.add(new WindowedReceiptStatistics(
+                            toDateTime(nextWindowStart), toDateTime(windowEnd), finisher.apply(merged)));
+                    nextWindowStart += slideMillis;
+                }
+                panes.headMap(nextWindowStart, false).clear();
+            }
+            return closed;
+        }
+
+        int openPanes() {
+            return panes.size();
+        }
+
+        private LocalDateTime toDateTime(long epochMillis) {
+            return LocalDateTime.ofEpochSecond(
+                    Math.floorDiv(epochMillis, 1000L), (int) Math.floorMod(epochMillis, 1000L) * 1_000_000, ZoneOffset.UTC);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package lab3.statistics.columnar;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import lab3.model.Item;
+import lab3.model.Money;
+import lab3.model.Receipt;
+import lab3.model.ReceiptStatus;
+import lab3.util.KeyDictionary;
+
+/**
+ * Columnar (struct-of-arrays) representation of a receipt collection. Receipt-level attributes and
+ * line items are stored in parallel primitive arrays, strings are dictionary-encoded into dense ids.
+ * Items of receipt {@code r} occupy the range {@code [itemOffset[r], itemOffset[r + 1])}.
+ *
+ * <p>Accessors return the backing arrays without copying so that aggregators can run tight loops
+ * over them; callers must treat them as read-only.
+ */
+public final class ReceiptBatch {
+
+    private static final ReceiptStatus[] STATUSES = ReceiptStatus.values();
+
+    private final int size;
+    private final int[] itemOffset;
+    private final double[] unitPrice;
+    private final int[] quantity;
+    private final int[] itemNameId;
+    private final int[] statusOrdinal;
+    private final int[] month;
+    private final int[] loyaltyPoints;
+    private final int[] customerId;
+    private final int[] cityId;
+    private final int[] stateId;
+    private final String[] itemNames;
+    private final String[] customerNames;
+    private final String[] cityNames;
+    private final String[] stateNames;
+    // цены в центах: из Item при сборке из чеков, для ofColumns выводятся из unitPrice при первом обращении
+    private volatile long[] unitPriceMinor;
+
+    private ReceiptBatch(Builder builder) {
+        this.size = builder.size;
+        this.itemOffset = Arrays.copyOf(builder.itemOffset, builder.size + 1);
+        this.unitPrice = Arrays.copyOf(builder.unitPrice, builder.itemCount);
+        this.unitPriceMinor = Arrays.copyOf(builder.unitPriceMinor, builder.itemCount);
+        this.quantity = Arrays.copyOf(builder.quantity, builder.itemCount);
+        this.itemNameId = Arrays.copyOf(builder.itemNameId, builder.itemCount);
+        this.statusOrdinal = Arrays.copyOf(builder.statusOrdinal, builder.size);
+        this.month = Arrays.copyOf(builder.month, builder.size);
+        this.loyaltyPoints = Arrays.copyOf(builder.loyaltyPoints, builder.size);
+        this.customerId = Arrays.copyOf(builder.customerId, builder.size);
+        this.cityId = Arrays.copyOf(builder.cityId, builder.size);
+        this.stateId = Arrays.copyOf(builder.stateId, builder.size);
+        this.itemNames = builder.itemNames.keys().toArray(String[]::new);
+        this.customerNames = builder.customerNames.keys().toArray(String[]::new);
+        this.cityNames = builder.cityNames.keys().toArray(String[]::new);
+        this.stateNames = builder.stateNames.keys().toArray(String[]::new);
+    }
+
+    private ReceiptBatch(
+            int size,
+            int[] itemOffset,
+            double[] unitPrice,
+            int[] quantity,
+            int[] itemNameId,
+            int[] statusOrdinal,
+            int[] month,
+            int[] loyaltyPoints,
+            int[] customerId,
+            int[] cityId,
+            int[] stateId,
+            String[] itemNames,
+            String[] customerNames,
+            String[] cityNames,
+            String[] stateNames) {
+        this.size = size;
+        this.itemOffset = itemOffset;
+        this.unitPrice = unitPrice;
+        this.quantity = quantity;
+        this.itemNameId = itemNameId;
+        this.statusOrdinal = statusOrdinal;
+        this.month = month;
+        this.loyaltyPoints = loyaltyPoints;
+        this.customerId = customerId;
+        this.cityId = cityId;
+        this.stateId = stateId;
+        this.itemNames = itemNames;
+        this.customerNames = customerNames;
+        this.cityNames = cityNames;
+        this.stateNames = stateNames;
+    }
+
+    public static ReceiptBatch from(List<Receipt> receipts) {
+        Objects.requireNonNull(receipts, "receipts");
+        Builder builder = builder(receipts.size());
+        for (Receipt receipt : receipts) {
+            builder.addReceipt(receipt);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Wraps already dictionary-encoded columns without copying them, e.g. columns bulk-read from a
+     * receipt file. Receipt columns must have {@code size} entries ({@code itemOffset} one more), item
+     * columns {@code itemOffset[size]} entries, and every id must index into its name array.
+     */
+    public static ReceiptBatch ofColumns(
+            int size,
+            int[] itemOffset,
+            double[] unitPrice,
+            int[] quantity,
+            int[] itemNameId,
+            int[] statusOrdinal,
+            int[] month,
+            int[] loyaltyPoints,
+            int[] customerId,
+            int[] cityId,
+            int[] stateId,
+            String[] itemNames,
+            String[] customerNames,
+            String[] cityNames,
+            String[] stateNames) {
+        if (size < 0 || itemOffset.length != size + 1) {
+            throw new IllegalArgumentException(
+                    "itemOffset must have " + (size + 1) + " entries for " + size + " receipts: " + itemOffset.length);
+        }
+        int items = itemOffset[size];
+        if (unitPrice.length != items || quantity.length != items || itemNameId.length != items
+                || statusOrdinal.length != size || month.length != size || loyaltyPoints.length != size
+                || customerId.length != size || cityId.length != size || stateId.length != size) {
+            throw new IllegalArgumentException("Column lengths do not match " + size + " receipts and " + items + " items");
+        }
+        return new ReceiptBatch(size, itemOffset, unitPrice, quantity, itemNameId, statusOrdinal, month,
+                loyaltyPoints, customerId, cityId, stateId, itemNames, customerNames, cityNames, stateNames);
+    }
+
+    public static Builder builder(int expectedReceipts) {
+        return new Builder(expectedReceipts);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int itemCount() {
+        return itemOffset[size];
+    }
+
+    public int[] itemOffset() {
+        return itemOffset;
+    }
+
+    public double[] unitPrice() {
+        return unitPrice;
+    }
+
+    /**
+     * Unit prices in minor units. Batches built from receipts take them from
+     * {@link Item#getUnitPriceMinor()}; for {@link #ofColumns} they are derived from
+     * {@link #unitPrice()} ({@link Money#toMinor}) on first use, exact when the prices are whole cents.
+     */
+    public long[] unitPriceMinor() {
+        long[] minor = unitPriceMinor;
+        if (minor == null) {
+            minor = new long[unitPrice.length];
+            for (int i = 0; i < minor.length; i++) {
+                minor[i] = Money.toMinor(unitPrice[i]);
+            }
+            unitPriceMinor = minor;
+        }
+        return minor;
+    }
+
+    public int[] quantity() {
+        return quantity;
+    }
+
+    public int[] itemNameId() {
+        return itemNameId;
+    }
+
+    public int[] statusOrdinal() {
+        return statusOrdinal;
+    }
+
+    public int[] month() {
+        return month;
+    }
+
+    public int[] loyaltyPoints() {
+        return loyaltyPoints;
+    }
+
+    public int[] customerId() {
+        return customerId;
+    }
+
+    public int[] cityId() {
+        return cityId;
+    }
+
+    public int[] stateId() {
+        return stateId;
+    }
+
+    public String[] itemNames() {
+        return itemNames;
+    }
+
+    public String[] customerNames() {
+        return customerNames;
+    }
+
+    public String[] cityNames() {
+        return cityNames;
+    }
+
+    public String[] stateNames() {
+        return stateNames;
+    }
+
+    /**
+     * Appends receipts column by column. A receipt is opened with {@link #beginReceipt} and its
+     * items are appended with {@link #addItem} until the next receipt starts or {@link #build()} is called.
+     */
+    public static final class Builder {
+        private int size;
+        private int itemCount;
+        private int[] itemOffset;
+        private double[] unitPrice;
+        private long[] unitPriceMinor;
+        private int[] quantity;
+        private int[] itemNameId;
+        private int[] statusOrdinal;
+        private int[] month;
+        private int[] loyaltyPoints;
+        private int[] customerId;
+        private int[] cityId;
+        private int[] stateId;
+        private final KeyDictionary<String> itemNames = new KeyDictionary<>();
+        private final KeyDictionary<String> customerNames = new KeyDictionary<>();
+        private final KeyDictionary<String> cityNames = new KeyDictionary<>();
+        private final KeyDictionary<String> stateNames = new KeyDictionary<>();
+
+        private Builder(int expectedReceipts) {
+            int receipts = Math.max(16, expectedReceipts);
+            int items = receipts * 4;
+            this.itemOffset = new int[receipts + 1];
+            this.unitPrice = new double[items];
+            this.unitPriceMinor = new long[items];
+            this.quantity = new int[items];
+            this.itemNameId = new int[items];
+            this.statusOrdinal = new int[receipts];
+            this.month = new int[receipts];
+            this.loyaltyPoints = new int[receipts];
+            this.customerId = new int[receipts];
+            this.cityId = new int[receipts];
+            this.stateId = new int[receipts];
+        }
+
+        public Builder addReceipt(Receipt receipt) {
+            beginReceipt(
+                    receipt.getStatus(),
+                    receipt.getDate().getMonthValue(),
+                    receipt.getLoyaltyPointsEarned(),
+                    receipt.getCustomer().getFirstName() + " " + receipt.getCustomer().getLastName(),
+                    receipt.getShippingAddress().city(),
+                    receipt.getShippingAddress().state());
+            for (Item item : receipt.getItems()) {
+                addItem(item.getName(), item.getQuantity(), item.getUnitPrice(), item.getUnitPriceMinor());
+            }
+            return this;
+        }
+
+        public Builder beginReceipt(
+                ReceiptStatus status,
+                int monthValue,
+                int loyaltyPointsEarned,
+                String customerName,
+                String city,
+                String state) {
+            ensureReceiptCapacity(size + 1);
+            statusOrdinal[size] = status.ordinal();
+            month[size] = monthValue;
+            loyaltyPoints[size] = loyaltyPointsEarned;
+            customerId[size] = customerNames.idOf(customerName);
+            cityId[size] = cityNames.idOf(city);
+            stateId[size] = stateNames.idOf(state);
+            size++;
+            itemOffset[size] = itemCount;
+            return this;
+        }
+
+        public Builder addItem(String name, int itemQuantity, double itemUnitPrice) {
+            return addItem(name, itemQuantity, itemUnitPrice, Money.toMinor(itemUnitPrice));
+        }
+
+        /**
+         * Appends an item whose price is also known in minor units, e.g. {@link Item#getUnitPriceMinor()}.
+         */
+        public Builder addItem(String name, int itemQuantity, double itemUnitPrice, long itemUnitPriceMinor) {
+            if (size == 0) {
+                throw new IllegalStateException("beginReceipt must be called before addItem");
+            }
+            ensureItemCapacity(itemCount + 1);
+            itemNameId[itemCount] = itemNames.idOf(name);
+            quantity[itemCount] = itemQuantity;
+            unitPrice[itemCount] = itemUnitPrice;
+            unitPriceMinor[itemCount] = itemUnitPriceMinor;
+            itemCount++;
+            itemOffset[size] = itemCount;
+            return this;
+        }
+
+        /**
+         * Appends every receipt of {@code batch}. Its names are re-encoded in receipt order, so the ids
+         * are the same as if its receipts had been added one by one.
+         */
+        public Builder addBatch(ReceiptBatch batch) {
+            // id товара в batch -> id в этом билдере, -1 пока товар не встречался
+            int[] itemIds = new int[batch.itemNames.length];
+            Arrays.fill(itemIds, -1);
+            long[] batchUnitPriceMinor = batch.unitPriceMinor();
+            for (int r = 0; r < batch.size; r++) {
+                beginReceipt(
+                        STATUSES[batch.statusOrdinal[r]],
+                        batch.month[r],
+                        batch.loyaltyPoints[r],
+                        batch.customerNames[batch.customerId[r]],
+                        batch.cityNames[batch.cityId[r]],
+                        batch.stateNames[batch.stateId[r]]);
+                for (int i = batch.itemOffset[r]; i < batch.itemOffset[r + 1]; i++) {
+                    int id = batch.itemNameId[i];
+                    if (itemIds[id] < 0) {
+                        itemIds[id] = itemNames.idOf(batch.itemNames[id]);
+                    }
+                    ensureItemCapacity(itemCount + 1);
+                    itemNameId[itemCount] = itemIds[id];
+                    quantity[itemCount] = batch.quantity[i];
+                    unitPrice[itemCount] = batch.unitPrice[i];
+                    unitPriceMinor[itemCount] = batchUnitPriceMinor[i];
+                    itemCount++;
+                    itemOffset[size] = itemCount;
+                }
+            }
+            return this;
+        }
+
+        public ReceiptBatch build() {
+            return new ReceiptBatch(this);
+        }
+
+        private void ensureReceiptCapacity(int required) {
+            if (required <= statusOrdinal.length) {
+                return;
+            }
+            int capacity = Math.max(required + 1, statusOrdinal.length * 2);
+            itemOffset = Arrays.copyOf(itemOffset, capacity + 1);
+            statusOrdinal = Arrays.copyOf(statusOrdinal, capacity);
+            month = Arrays.copyOf(month, capacity);
+            loyaltyPoints = Arrays.copyOf(loyaltyPoints, capacity);
+            customerId = Arrays.copyOf(customerId, capacity);
+            cityId = Arrays.copyOf(cityId, capacity);
+            stateId = Arrays.copyOf(stateId, capacity);
+        }
+
+        private void ensureItemCapacity(int required) {
+            if (required <= unitPrice.length) {
+                return;
+            }
+            int capacity = Math.max(required, unitPrice.length * 2);
+            unitPrice = Arrays.copyOf(unitPrice, capacity);
+            unitPriceMinor = Arrays.copyOf(unitPriceMinor, capacity);
+            quantity = Arrays.copyOf(quantity, capacity);
+            itemNameId = Arrays.copyOf(itemNameId, capacity);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package lab3.statistics.model;
+
+import java.util.Collection;
+
+/**
+ * How {@link ReceiptStatistics#getUniqueCustomers()} is computed and whether the statistics carry a
+ * {@link HyperLogLog} of the customers, so that merged statistics count every customer once.
+ * <ul>
+ *   <li>{@link #exact()} (the default) reports the exact count and builds no sketch; merging such
+ *       results adds the counts, an upper bound when customers repeat across parts.</li>
+ *   <li>{@link #mergeable(int)} reports the exact count of a single result and attaches a sketch of
+ *       the given precision for {@link ReceiptStatistics#merge}.</li>
+ *   <li>{@link #approximate(int)} attaches the sketch and reports its estimate, consistent with
+ *       merged results. The collector accumulators feed the sketch, and Space-Saving sketches for
+ *       the customer top lists, receipt by receipt and keep no per-customer totals, so customer
+ *       state stays a few KB whatever the population; the customer top lists are then estimates
+ *       with error bounds, like those of merged results.</li>
+ * </ul>
+ */
+public record CardinalityMode(boolean approximate, boolean sketched, int precision) {
+
+    private static final CardinalityMode EXACT = new CardinalityMode(false, false, HyperLogLog.DEFAULT_PRECISION);
+
+    public CardinalityMode {
+        if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+            throw new IllegalArgumentException("Unsupported HyperLogLog precision: " + precision);
+        }
+        if (approximate && !sketched) {
+            throw new IllegalArgumentException("Approximate cardinality needs a sketch");
+        }
+    }
+
+    public static CardinalityMode exact() {
+        return EXACT;
+    }
+
+    public static CardinalityMode mergeable(int precision) {
+        return new CardinalityMode(false, true, precision);
+    }
+
+    public static CardinalityMode approximate(int precision) {
+        return new CardinalityMode(true, true, precision);
+    }
+
+    /**
+     * Sets the distinct customer count of {@code stats} and, if this mode is sketched, its customer
+     * sketch from the given distinct customer keys ({@code "first last"}).
+     */
+    public void applyTo(ReceiptStatistics stats, Collection<String> customers) {
+        if (!sketched) {
+            // без скетча: точный счёт ничего не стоит, а O(клиентов) хеширование никому не нужно
+            stats.setCustomerSketch(null);
+            stats.setUniqueCustomers(customers.size());
+            return;
+        }
+        HyperLogLog sketch = new HyperLogLog(precision);
+        for (String customer : customers) {
+            sketch.add(customer);
+        }
+        stats.setCustomerSketch(sketch);
+        stats.setUniqueCustomers(approximate ? sketch.estimate() : customers.size());
+    }
+
+    /**
+     * Sets the customer sketch of {@code stats} and its estimate as the distinct customer count, for
+     * approximate mode when the sketch was fed while the receipts were added.
+     */
+    public void applyTo(ReceiptStatistics stats, HyperLogLog customers) {
+        if (!approximate) {
+            throw new IllegalStateException("Only approximate mode counts customers from the sketch alone");
+        }
+        if (customers.precision() != precision) {
+            throw new IllegalArgumentException("Sketch precision " + customers.precision() + " != " + precision);
+        }
+        stats.setCustomerSketch(customers);
+        stats.setUniqueCustomers(customers.estimate());
+    }
+}
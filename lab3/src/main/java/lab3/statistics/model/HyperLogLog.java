@@ -0,0 +1,171 @@
+package lab3.statistics.model;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog cardinality sketch with {@code 2^precision} one-byte registers: 4 KB at the default
+ * precision of 12, for a standard error of about {@code 1.04 / sqrt(2^precision)} (1.6 %), however
+ * many distinct values are added. Small cardinalities are estimated by linear counting, which is
+ * close to exact while most registers are still empty.
+ *
+ * <p>Sketches of the same precision merge by taking the register-wise maximum; merging is
+ * commutative, associative and idempotent, so the same value counted in several partial results is
+ * still counted once. A sketch can be {@linkplain #foldTo folded} to a lower precision, which gives
+ * exactly the sketch that precision would have built from the same values, so sketches of different
+ * precisions are merged at the lower of the two. Instances are not thread-safe.
+ */
+public final class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "precision must be in [" + MIN_PRECISION + ", " + MAX_PRECISION + "]: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void add(String value) {
+        addHash(hash(value));
+    }
+
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // единица-ограничитель: ранг не превышает 64 - precision + 1 даже для нулевого остатка
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Merges {@code other} into this sketch and returns {@code this}.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException(
+                    "Cannot merge HyperLogLog sketches of precision " + precision + " and " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns a new sketch of the given, not higher, precision holding the same values. Register
+     * {@code j} moves to {@code j >>> d}, where {@code d} is the precision difference; the {@code d}
+     * dropped index bits become the leading bits of the rank suffix.
+     */
+    public HyperLogLog foldTo(int precision) {
+        if (precision > this.precision) {
+            throw new IllegalArgumentException(
+                    "Cannot fold a HyperLogLog of precision " + this.precision + " up to " + precision);
+        }
+        HyperLogLog folded = new HyperLogLog(precision);
+        int shift = this.precision - precision;
+        int lowMask = (1 << shift) - 1;
+        for (int j = 0; j < registers.length; j++) {
+            int register = registers[j];
+            if (register == 0) {
+                continue;
+            }
+            int dropped = j & lowMask;
+            // ненулевые отброшенные биты сами задают ранг, иначе к старому рангу добавляются shift нулей
+            int rank = dropped != 0
+                    ? Integer.numberOfLeadingZeros(dropped) - (32 - shift) + 1
+                    : shift + register;
+            int index = j >>> shift;
+            if (rank > folded.registers[index]) {
+                folded.registers[index] = (byte) rank;
+            }
+        }
+        return folded;
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Double.longBitsToDouble((1023L - register) << 52); // 2^-register
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double raw = alpha(m) * m * m / sum;
+        if (raw <= 2.5 * m && zeros > 0) {
+            return Math.round(m * Math.log((double) m / zeros));
+        }
+        return Math.round(raw);
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    public int sizeInBytes() {
+        return registers.length;
+    }
+
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HyperLogLog other && other.precision == precision && Arrays.equals(other.registers, registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * precision + Arrays.hashCode(registers);
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLog[precision=" + precision + ", estimate=" + estimate() + "]";
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 chars followed by the MurmurHash3 finaliser, so that similar
+     * strings (customer names differing in one letter) land in unrelated registers.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+}
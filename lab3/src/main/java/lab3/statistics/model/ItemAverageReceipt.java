@@ -4,9 +4,11 @@ import java.util.Comparator;
 
 /**
  * Aggregated information about the average receipt amount for orders
- * containing a particular item.
+ * containing a particular item. The total is kept so that merged results add exact totals instead of
+ * rebuilding them from the rounded average.
  */
-public record ItemAverageReceipt(String itemName, long receiptCount, double averageReceiptAmount) {
+public record ItemAverageReceipt(String itemName, long receiptCount, double totalReceiptAmount,
+                                 double averageReceiptAmount) {
 
     public static Comparator<ItemAverageReceipt> byAverageReceiptDescending() {
         return Comparator.comparingDouble(ItemAverageReceipt::averageReceiptAmount)
@@ -1,5 +1,6 @@
 package lab3.statistics.model;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -7,11 +8,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 import java.util.stream.Collector;
 
 import lab3.model.Item;
 import lab3.model.Receipt;
+import lab3.util.ItemNameCache;
 
 /**
  * Utilities for calculating {@link ItemAverageReceipt} metrics independently
@@ -30,6 +33,10 @@ public final class ItemAverageReceiptMetrics {
         return collector(item -> itemNameDelayMillis > 0 ? item.getName(itemNameDelayMillis) : item.getName());
     }
 
+    public static Collector<Receipt, ?, List<ItemAverageReceipt>> collector(ItemNameCache cache, long itemNameDelayMillis) {
+        return collector(cache.resolver(item -> itemNameDelayMillis > 0 ? item.getName(itemNameDelayMillis) : item.getName()));
+    }
+
     public static Collector<Receipt, ?, List<ItemAverageReceipt>> collector(
             Function<Item, String> itemNameExtractor) {
         Function<Item, String> extractor = Objects.requireNonNull(itemNameExtractor, "itemNameExtractor");
@@ -129,23 +136,68 @@ public final class ItemAverageReceiptMetrics {
         }
 
         public List<ItemAverageReceipt> finish() {
+            return finish(DoubleUnaryOperator.identity());
+        }
+
+        /**
+         * Same as {@link #finish()}, but every receipt total is passed through {@code toMajor} first,
+         * for totals accumulated in minor units.
+         */
+        public List<ItemAverageReceipt> finish(DoubleUnaryOperator toMajor) {
             if (stats.isEmpty()) {
                 return List.of();
             }
             return stats.entrySet().stream()
-                    .filter(entry -> entry.getValue().receiptCount > 2)
-                    .map(entry -> {
-                        Stats value = entry.getValue();
-                        double average = value.receiptCount > 0
-                                ? value.totalReceiptAmount / value.receiptCount
-                                : 0.0;
-                        return new ItemAverageReceipt(entry.getKey(), value.receiptCount, average);
-                    })
+                    .filter(entry -> isReported(entry.getValue().receiptCount))
+                    .map(entry -> toItemAverageReceipt(
+                            entry.getKey(),
+                            entry.getValue().receiptCount,
+                            toMajor.applyAsDouble(entry.getValue().totalReceiptAmount)))
                     .sorted(ItemAverageReceipt.byAverageReceiptDescending())
                     .toList();
         }
     }
 
+    /**
+     * Builds the final metrics from per-item totals kept in parallel arrays indexed by item id,
+     * applying the same filtering and ordering as {@link ItemAverageAccumulator#finish()}.
+     */
+    public static List<ItemAverageReceipt> fromTotals(
+            String[] itemNames,
+            long[] receiptCounts,
+            double[] receiptTotals) {
+        return fromTotals(itemNames, receiptCounts, receiptTotals, DoubleUnaryOperator.identity());
+    }
+
+    /**
+     * Same as {@link #fromTotals(String[], long[], double[])}, but every receipt total is passed
+     * through {@code toMajor} first, for totals accumulated in minor units.
+     */
+    public static List<ItemAverageReceipt> fromTotals(
+            String[] itemNames,
+            long[] receiptCounts,
+            double[] receiptTotals,
+            DoubleUnaryOperator toMajor) {
+        List<ItemAverageReceipt> result = new ArrayList<>();
+        for (int id = 0; id < itemNames.length; id++) {
+            if (isReported(receiptCounts[id])) {
+                result.add(toItemAverageReceipt(
+                        itemNames[id], receiptCounts[id], toMajor.applyAsDouble(receiptTotals[id])));
+            }
+        }
+        result.sort(ItemAverageReceipt.byAverageReceiptDescending());
+        return List.copyOf(result);
+    }
+
+    private static boolean isReported(long receiptCount) {
+        return receiptCount > 2;
+    }
+
+    private static ItemAverageReceipt toItemAverageReceipt(String itemName, long receiptCount, double totalReceiptAmount) {
+        double average = receiptCount > 0 ? totalReceiptAmount / receiptCount : 0.0;
+        return new ItemAverageReceipt(itemName, receiptCount, totalReceiptAmount, average);
+    }
+
     private static final class Stats {
         private long receiptCount;
         private double totalReceiptAmount;
@@ -0,0 +1,207 @@
+package lab3.statistics.model;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with relative accuracy (DDSketch): positive values are counted in
+ * logarithmic buckets {@code (gamma^(i-1), gamma^i]} with {@code gamma = (1 + a) / (1 - a)}, so any
+ * reported quantile is within {@code a} (1 % by default) of a value of that rank, however many values
+ * were added. Values up to {@link #MIN_INDEXABLE} (zero amounts) share one extra bucket.
+ *
+ * <p>At most {@code maxBuckets} buckets are kept; if the values span more, the lowest buckets are
+ * collapsed, so the upper tail (p95, p99) keeps its accuracy. With the defaults this only happens for
+ * values about 17 orders of magnitude apart. Sketches with the same accuracy merge by adding
+ * bucket counts, which is exact: merged sketches answer like one sketch of all values. Minimum and
+ * maximum are tracked exactly and bound the reported quantiles. Instances are not thread-safe.
+ */
+public final class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+    public static final double MIN_INDEXABLE = 1e-9;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final double relativeAccuracy;
+    private final int maxBuckets;
+    private final double gamma;
+    private final double logGamma;
+
+    private long[] counts = new long[0];
+    private int offset;                       // индекс корзины counts[0]
+    private int minIndex = Integer.MAX_VALUE; // занятый диапазон корзин
+    private int maxIndex = Integer.MIN_VALUE;
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("relativeAccuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        if (maxBuckets <= 0) {
+            throw new IllegalArgumentException("maxBuckets must be positive: " + maxBuckets);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxBuckets = maxBuckets;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("value must not be NaN");
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value <= MIN_INDEXABLE) {
+            zeroCount++;
+            return;
+        }
+        increment((int) Math.ceil(Math.log(value) / logGamma), 1L);
+    }
+
+    /**
+     * Merges {@code other} into this sketch and returns {@code this}.
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge quantile sketches of relative accuracy "
+                    + relativeAccuracy + " and " + other.relativeAccuracy);
+        }
+        if (other.count == 0) {
+            return this;
+        }
+        count += other.count;
+        zeroCount += other.zeroCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        if (other.minIndex <= other.maxIndex) {
+            // сначала расширяем диапазон целиком, чтобы не перевыделять массив на каждой корзине
+            extendRange(other.minIndex);
+            extendRange(other.maxIndex);
+            for (int index = other.minIndex; index <= other.maxIndex; index++) {
+                long bucket = other.counts[index - other.offset];
+                if (bucket > 0) {
+                    increment(index, bucket);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Value of rank {@code q * (count - 1)}, e.g. {@code quantile(0.99)} for p99; {@code NaN} while
+     * the sketch is empty.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("q must be in [0, 1]: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double rank = q * (count - 1);
+        long seen = zeroCount;
+        if (rank < seen) {
+            return clamp(0.0);
+        }
+        for (int index = minIndex; index <= maxIndex; index++) {
+            seen += counts[index - offset];
+            if (rank < seen) {
+                // середина корзины в смысле относительной ошибки
+                return clamp(2 * Math.exp(index * logGamma) / (gamma + 1));
+            }
+        }
+        return max;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double min() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double max() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Number of buckets between the lowest and the highest occupied one.
+     */
+    public int bucketCount() {
+        return minIndex <= maxIndex ? maxIndex - minIndex + 1 : 0;
+    }
+
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy, maxBuckets);
+        copy.counts = Arrays.copyOf(counts, counts.length);
+        copy.offset = offset;
+        copy.minIndex = minIndex;
+        copy.maxIndex = maxIndex;
+        copy.zeroCount = zeroCount;
+        copy.count = count;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch[count=" + count + ", p50=" + quantile(0.5) + ", p99=" + quantile(0.99) + "]";
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private void increment(int index, long n) {
+        if (index < minIndex || index > maxIndex) {
+            index = extendRange(index);
+        }
+        counts[index - offset] += n;
+    }
+
+    /**
+     * Makes {@code index} part of the occupied range and returns the bucket it is counted in, which
+     * is higher if the lowest buckets had to be collapsed.
+     */
+    private int extendRange(int index) {
+        int newMin = Math.min(minIndex, index);
+        int newMax = Math.max(maxIndex, index);
+        if (newMax - newMin >= maxBuckets) {
+            newMin = newMax - maxBuckets + 1;
+        }
+        if (newMin < offset || newMax >= offset + counts.length) {
+            int span = newMax - newMin + 1;
+            int length = Math.max(span, Math.min(maxBuckets, Math.max(INITIAL_CAPACITY, counts.length * 2)));
+            int newOffset = newMin - (length - span) / 2;
+            long[] grown = new long[length];
+            for (int i = minIndex; i <= maxIndex; i++) {
+                grown[Math.max(i, newMin) - newOffset] += counts[i - offset];
+            }
+            counts = grown;
+            offset = newOffset;
+        } else {
+            for (int i = minIndex; i < newMin; i++) {
+                counts[newMin - offset] += counts[i - offset];
+                counts[i - offset] = 0;
+            }
+        }
+        minIndex = newMin;
+        maxIndex = newMax;
+        return Math.max(index, newMin);
+    }
+}
@@ -0,0 +1,86 @@
+package lab3.statistics.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import lab3.model.ReceiptStatus;
+
+/**
+ * Receipt amount distribution over all receipts, per status and per shipping state, kept as
+ * {@link QuantileSketch}es: memory grows with the number of groups and the spread of amounts, not
+ * with the number of receipts. Accumulators add every receipt total, merge the distributions of
+ * their parts and finish {@link ReceiptStatistics} with {@link #applyTo}. Instances are not
+ * thread-safe.
+ */
+public final class ReceiptAmountDistribution {
+
+    private final double relativeAccuracy;
+    private final QuantileSketch overall;
+    private final Map<ReceiptStatus, QuantileSketch> byStatus = new EnumMap<>(ReceiptStatus.class);
+    private final Map<String, QuantileSketch> byState = new HashMap<>();
+
+    public ReceiptAmountDistribution() {
+        this(QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public ReceiptAmountDistribution(double relativeAccuracy) {
+        this.relativeAccuracy = relativeAccuracy;
+        this.overall = newSketch();
+    }
+
+    public void add(ReceiptStatus status, String state, double amount) {
+        overall.add(amount);
+        byStatus.computeIfAbsent(status, key -> newSketch()).add(amount);
+        byState.computeIfAbsent(state, key -> newSketch()).add(amount);
+    }
+
+    /**
+     * Merges {@code other} into this distribution and returns {@code this}.
+     */
+    public ReceiptAmountDistribution merge(ReceiptAmountDistribution other) {
+        if (other == null || other == this) {
+            return this;
+        }
+        overall.merge(other.overall);
+        other.byStatus.forEach((status, sketch) -> byStatus.computeIfAbsent(status, key -> newSketch()).merge(sketch));
+        other.byState.forEach((state, sketch) -> byState.computeIfAbsent(state, key -> newSketch()).merge(sketch));
+        return this;
+    }
+
+    public QuantileSketch overall() {
+        return overall;
+    }
+
+    public Map<ReceiptStatus, QuantileSketch> byStatus() {
+        return Collections.unmodifiableMap(byStatus);
+    }
+
+    public Map<String, QuantileSketch> byState() {
+        return Collections.unmodifiableMap(byState);
+    }
+
+    public ReceiptAmountDistribution copy() {
+        return new ReceiptAmountDistribution(relativeAccuracy).merge(this);
+    }
+
+    /**
+     * Stores the distribution in {@code stats} and sets its receipt amount percentiles.
+     */
+    public void applyTo(ReceiptStatistics stats) {
+        Map<ReceiptStatus, ReceiptAmountPercentiles> statusPercentiles = new EnumMap<>(ReceiptStatus.class);
+        byStatus.forEach((status, sketch) -> statusPercentiles.put(status, ReceiptAmountPercentiles.of(sketch)));
+        Map<String, ReceiptAmountPercentiles> statePercentiles = HashMap.newHashMap(byState.size());
+        byState.forEach((state, sketch) -> statePercentiles.put(state, ReceiptAmountPercentiles.of(sketch)));
+
+        stats.setReceiptAmountDistribution(this);
+        stats.setReceiptAmountPercentiles(ReceiptAmountPercentiles.of(overall));
+        stats.setReceiptAmountPercentilesByStatus(statusPercentiles);
+        stats.setReceiptAmountPercentilesByState(statePercentiles);
+    }
+
+    private QuantileSketch newSketch() {
+        return new QuantileSketch(relativeAccuracy, QuantileSketch.DEFAULT_MAX_BUCKETS);
+    }
+}
@@ -0,0 +1,20 @@
+package lab3.statistics.model;
+
+/**
+ * Receipt amount percentiles of a group of receipts (all receipts, one status or one state), read
+ * from a {@link QuantileSketch}, so each is within its relative accuracy of the true percentile.
+ */
+public record ReceiptAmountPercentiles(long receiptCount, double p50, double p95, double p99) {
+
+    public static ReceiptAmountPercentiles empty() {
+        return new ReceiptAmountPercentiles(0L, 0.0, 0.0, 0.0);
+    }
+
+    public static ReceiptAmountPercentiles of(QuantileSketch sketch) {
+        if (sketch.count() == 0) {
+            return empty();
+        }
+        return new ReceiptAmountPercentiles(
+                sketch.count(), sketch.quantile(0.50), sketch.quantile(0.95), sketch.quantile(0.99));
+    }
+}
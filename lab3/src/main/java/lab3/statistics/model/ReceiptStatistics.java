@@ -16,6 +16,11 @@ public class ReceiptStatistics {
     private TotalAverage totalAverage = TotalAverage.empty();
     private double minReceiptAmount;
     private double maxReceiptAmount;
+    // перцентили суммы чека считаются по скетчу распределения, отдельные суммы не хранятся
+    private ReceiptAmountPercentiles receiptAmountPercentiles = ReceiptAmountPercentiles.empty();
+    private Map<ReceiptStatus, ReceiptAmountPercentiles> receiptAmountPercentilesByStatus = new EnumMap<>(ReceiptStatus.class);
+    private Map<String, ReceiptAmountPercentiles> receiptAmountPercentilesByState = new HashMap<>();
+    private ReceiptAmountDistribution receiptAmountDistribution = new ReceiptAmountDistribution();
 
     private long totalOrders;
     private Map<ReceiptStatus, Long> ordersByStatus = new EnumMap<>(ReceiptStatus.class);
@@ -32,6 +37,11 @@ public class ReceiptStatistics {
     private List<StatusRevenue> revenueByStatusRanking = new ArrayList<>();
     private List<PriceTierSales> salesByPriceTier = new ArrayList<>();
     private List<StateRevenue> topStatesByRevenue = new ArrayList<>();
+    // суммарные данные для топов: при merge объединяются скетчи, а списки строятся заново
+    private TopSketches topSketches = TopSketches.empty();
+    private TopLimits topLimits = TopLimits.defaults();
+    // HyperLogLog клиентов: при merge уникальные клиенты не складываются, а оцениваются по объединению
+    private HyperLogLog customerSketch;
 
     /**
      * Объединяет текущую статистику с другой.
@@ -45,7 +55,7 @@ public class ReceiptStatistics {
         this.totalOrders += other.totalOrders;
         this.totalItemsSold += other.totalItemsSold;
         this.totalLoyaltyPoints += other.totalLoyaltyPoints;
-        this.uniqueCustomers += other.uniqueCustomers;
+        mergeUniqueCustomers(other);
 
         this.minReceiptAmount = combineMin(this.minReceiptAmount, other.minReceiptAmount);
         this.maxReceiptAmount = combineMax(this.maxReceiptAmount, other.maxReceiptAmount);
@@ -55,21 +65,107 @@ public class ReceiptStatistics {
         this.totalAverage = new TotalAverage(this.totalOrders, this.totalRevenue, average);
         this.averageReceiptAmount = average;
 
+        if (other.receiptAmountDistribution != null) {
+            ReceiptAmountDistribution distribution = this.receiptAmountDistribution != null
+                    ? this.receiptAmountDistribution.copy()
+                    : new ReceiptAmountDistribution();
+            distribution.merge(other.receiptAmountDistribution).applyTo(this);
+        }
+
         mergeMapLong(this.ordersByStatus, other.ordersByStatus);
         mergeMapDouble(this.revenueByMonth, other.revenueByMonth);
 
-        this.topCustomersBySpending = mergeLists(this.topCustomersBySpending, other.topCustomersBySpending);
-        this.topCustomersByOrderCount = mergeLists(this.topCustomersByOrderCount, other.topCustomersByOrderCount);
-        this.topItemsByQuantity = mergeLists(this.topItemsByQuantity, other.topItemsByQuantity);
-        this.itemAverageReceipts = mergeLists(this.itemAverageReceipts, other.itemAverageReceipts);
-        this.topCitiesByRevenue = mergeLists(this.topCitiesByRevenue, other.topCitiesByRevenue);
-        this.revenueByStatusRanking = mergeLists(this.revenueByStatusRanking, other.revenueByStatusRanking);
-        this.salesByPriceTier = mergeLists(this.salesByPriceTier, other.salesByPriceTier);
-        this.topStatesByRevenue = mergeLists(this.topStatesByRevenue, other.topStatesByRevenue);
+        // --- топы: объединяем скетчи (ограниченного размера) и заново строим списки ---
+        mergeTops(other);
+
+        // --- рейтинги по enum и средние чеки товаров складываются по ключу точно ---
+        this.revenueByStatusRanking = mergeStatusRevenue(this.revenueByStatusRanking, other.revenueByStatusRanking);
+        this.salesByPriceTier = mergePriceTierSales(this.salesByPriceTier, other.salesByPriceTier);
+        this.itemAverageReceipts = mergeItemAverageReceipts(this.itemAverageReceipts, other.itemAverageReceipts);
 
         return this;
     }
 
+    /**
+     * Независимая копия: коллекции и изменяемые скетчи копируются, так что изменения копии
+     * (в том числе {@link #merge}) не затрагивают оригинал. Элементы списков — неизменяемые записи.
+     */
+    public ReceiptStatistics copy() {
+        ReceiptStatistics copy = new ReceiptStatistics();
+        copy.totalRevenue = totalRevenue;
+        copy.averageReceiptAmount = averageReceiptAmount;
+        copy.totalAverage = totalAverage;
+        copy.minReceiptAmount = minReceiptAmount;
+        copy.maxReceiptAmount = maxReceiptAmount;
+        copy.receiptAmountPercentiles = receiptAmountPercentiles;
+        copy.receiptAmountPercentilesByStatus = copyOf(receiptAmountPercentilesByStatus, ReceiptStatus.class);
+        copy.receiptAmountPercentilesByState = new HashMap<>(receiptAmountPercentilesByState);
+        copy.receiptAmountDistribution = receiptAmountDistribution != null ? receiptAmountDistribution.copy() : null;
+        copy.totalOrders = totalOrders;
+        copy.ordersByStatus = copyOf(ordersByStatus, ReceiptStatus.class);
+        copy.totalItemsSold = totalItemsSold;
+        copy.uniqueCustomers = uniqueCustomers;
+        copy.totalLoyaltyPoints = totalLoyaltyPoints;
+        copy.revenueByMonth = new HashMap<>(revenueByMonth);
+        copy.topCustomersBySpending = new ArrayList<>(topCustomersBySpending);
+        copy.topCustomersByOrderCount = new ArrayList<>(topCustomersByOrderCount);
+        copy.topItemsByQuantity = new ArrayList<>(topItemsByQuantity);
+        copy.itemAverageReceipts = new ArrayList<>(itemAverageReceipts);
+        copy.topCitiesByRevenue = new ArrayList<>(topCitiesByRevenue);
+        copy.revenueByStatusRanking = new ArrayList<>(revenueByStatusRanking);
+        copy.salesByPriceTier = new ArrayList<>(salesByPriceTier);
+        copy.topStatesByRevenue = new ArrayList<>(topStatesByRevenue);
+        // TopSketches не меняется на месте: merge возвращает новые скетчи
+        copy.topSketches = topSketches;
+        copy.topLimits = topLimits;
+        copy.customerSketch = customerSketch != null ? customerSketch.copy() : null;
+        return copy;
+    }
+
+    private static <K extends Enum<K>, V> Map<K, V> copyOf(Map<K, V> map, Class<K> keyType) {
+        Map<K, V> copy = new EnumMap<>(keyType);
+        copy.putAll(map);
+        return copy;
+    }
+
+    /**
+     * Пустая статистика (например, начальное значение свёртки) перенимает скетчи и длины топов другой
+     * части, иначе берутся большие длины и ёмкости из двух, чтобы объединение не обрезало топы.
+     */
+    private void mergeTops(ReceiptStatistics other) {
+        if (other.topSketches == null) {
+            return;
+        }
+        TopLimits otherLimits = other.topLimits != null ? other.topLimits : TopLimits.defaults();
+        if (this.topSketches == null || this.topSketches.isEmpty()) {
+            // TopSketches не меняется на месте, поэтому скетчи другой части можно не копировать
+            other.topSketches.applyTo(this, otherLimits);
+        } else {
+            TopLimits limits = this.topLimits != null ? TopLimits.max(this.topLimits, otherLimits) : otherLimits;
+            this.topSketches.merge(other.topSketches).applyTo(this, limits);
+        }
+    }
+
+    /**
+     * Клиент, встречавшийся в обеих частях, считается один раз. Без скетча у одной из частей
+     * остаётся только сумма — верхняя граница, и скетч дальше не переносится.
+     */
+    private void mergeUniqueCustomers(ReceiptStatistics other) {
+        boolean empty = this.customerSketch == null && this.uniqueCustomers == 0;
+        if (empty) {
+            this.customerSketch = other.customerSketch != null ? other.customerSketch.copy() : null;
+            this.uniqueCustomers = other.uniqueCustomers;
+        } else if (this.customerSketch != null && other.customerSketch != null) {
+            // скетчи разной точности объединяются на меньшей из двух
+            int precision = Math.min(this.customerSketch.precision(), other.customerSketch.precision());
+            this.customerSketch = this.customerSketch.foldTo(precision).merge(other.customerSketch.foldTo(precision));
+            this.uniqueCustomers = this.customerSketch.estimate();
+        } else {
+            this.customerSketch = null;
+            this.uniqueCustomers += other.uniqueCustomers;
+        }
+    }
+
     private double combineMin(double a, double b) {
         if (a == 0) return b;
         if (b == 0) return a;
@@ -90,14 +186,46 @@ public class ReceiptStatistics {
         other.forEach((k, v) -> base.merge(k, v, Double::sum));
     }
 
-    private <T> List<T> mergeLists(List<T> a, List<T> b) {
-        if ((a == null || a.isEmpty()) && (b == null || b.isEmpty())) return Collections.emptyList();
-        if (a == null || a.isEmpty()) return new ArrayList<>(b);
-        if (b == null || b.isEmpty()) return new ArrayList<>(a);
+    private List<StatusRevenue> mergeStatusRevenue(List<StatusRevenue> a, List<StatusRevenue> b) {
+        Map<ReceiptStatus, StatusRevenue> byStatus = new EnumMap<>(ReceiptStatus.class);
+        for (List<StatusRevenue> list : Arrays.asList(a, b)) {
+            if (list == null) continue;
+            list.forEach(entry -> byStatus.merge(entry.status(), entry, (left, right) -> {
+                double revenue = left.totalRevenue() + right.totalRevenue();
+                long orders = left.ordersCount() + right.ordersCount();
+                return new StatusRevenue(left.status(), revenue, orders, orders > 0 ? revenue / orders : 0.0);
+            }));
+        }
+        return byStatus.values().stream().sorted(StatusRevenue.byRevenueDescending()).toList();
+    }
+
+    private List<PriceTierSales> mergePriceTierSales(List<PriceTierSales> a, List<PriceTierSales> b) {
+        Map<PriceTier, PriceTierSales> byTier = new EnumMap<>(PriceTier.class);
+        for (List<PriceTierSales> list : Arrays.asList(a, b)) {
+            if (list == null) continue;
+            list.forEach(entry -> byTier.merge(entry.priceTier(), entry, (left, right) -> {
+                long quantity = left.itemsSold() + right.itemsSold();
+                double revenue = left.totalRevenue() + right.totalRevenue();
+                return new PriceTierSales(left.priceTier(), quantity, revenue, quantity > 0 ? revenue / quantity : 0.0);
+            }));
+        }
+        return byTier.values().stream().sorted(PriceTierSales.byRevenueDescending()).toList();
+    }
 
-        List<T> merged = new ArrayList<>(a.size() + b.size());
-        merged.addAll(a);
-        merged.addAll(b);
-        return merged;
+    /**
+     * Товары, не попавшие в отчёт одной из частей (слишком мало чеков), в объединении не учитываются.
+     */
+    private List<ItemAverageReceipt> mergeItemAverageReceipts(List<ItemAverageReceipt> a, List<ItemAverageReceipt> b) {
+        Map<String, ItemAverageReceipt> byItem = new HashMap<>();
+        for (List<ItemAverageReceipt> list : Arrays.asList(a, b)) {
+            if (list == null) continue;
+            list.forEach(entry -> byItem.merge(entry.itemName(), entry, (left, right) -> {
+                long receipts = left.receiptCount() + right.receiptCount();
+                // складываются сами суммы, а не average * count: в FIXED_POINT это точно
+                double total = left.totalReceiptAmount() + right.totalReceiptAmount();
+                return new ItemAverageReceipt(left.itemName(), receipts, total, receipts > 0 ? total / receipts : 0.0);
+            }));
+        }
+        return byItem.values().stream().sorted(ItemAverageReceipt.byAverageReceiptDescending()).toList();
     }
 }
@@ -0,0 +1,216 @@
+package lab3.statistics.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Mergeable heavy-hitters summary (weighted Space-Saving) that keeps at most {@code capacity} keys
+ * with their estimated weight, e.g. customers with their spending or items with the quantity sold.
+ * Each key may also carry a companion sum (revenue next to quantity, orders next to revenue) that is
+ * summed while the key is tracked.
+ *
+ * <p>The weight of an estimate is what was actually counted for the key, so it never overestimates:
+ * {@code weight <= true weight <= weight + error}, where the error covers what may have been added
+ * while the key was not tracked (in this sketch or in a merged one). Keys are ranked by counted
+ * weight, and any key that is not tracked weighs at most {@link #untrackedBound()}. Merging keeps
+ * these guarantees, is associative up to floating point rounding and again keeps at most
+ * {@code capacity} keys, so partial statistics of batches, shards or nodes can be combined in any
+ * grouping with O(capacity) memory. A key that is among the {@code capacity} heaviest of every part
+ * is reported exactly.
+ *
+ * <p>A sketch built from complete totals ({@link TopMetrics#sketch}) is exact for the keys it keeps.
+ * Ties are ordered by companion (descending) and then by key, like the top lists of
+ * {@link ReceiptStatistics}. Instances are not thread-safe.
+ */
+public final class TopKSketch<K extends Comparable<K>> {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private int capacity;
+    private final Map<K, Counter> counters;
+    private double untrackedBound;
+    private double totalWeight;
+
+    public TopKSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(Math.min(capacity, 1 << 10) * 2);
+    }
+
+    /**
+     * Sketch of already selected entries, e.g. the first {@code capacity} keys of complete totals;
+     * {@code untrackedBound} bounds the weight of every key that was left out.
+     */
+    static <K extends Comparable<K>> TopKSketch<K> of(
+            int capacity,
+            List<Estimate<K>> entries,
+            double untrackedBound,
+            double totalWeight) {
+        TopKSketch<K> sketch = new TopKSketch<>(capacity);
+        for (Estimate<K> entry : entries) {
+            sketch.counters.put(entry.key(), new Counter(entry.weight(), entry.error(), entry.companion()));
+        }
+        sketch.untrackedBound = untrackedBound;
+        sketch.totalWeight = totalWeight;
+        sketch.truncate();
+        return sketch;
+    }
+
+    /**
+     * Adds {@code weight} (and {@code companion}) to the key. When the sketch is full, the key with
+     * the lowest upper bound is evicted, as in Space-Saving, and the new key inherits the eviction
+     * bound as its error.
+     */
+    public void offer(K key, double weight, double companion) {
+        Objects.requireNonNull(key, "key");
+        totalWeight += weight;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.weight += weight;
+            counter.companion += companion;
+            return;
+        }
+        if (counters.size() >= capacity) {
+            Map.Entry<K, Counter> weakest = weakest();
+            counters.remove(weakest.getKey());
+            untrackedBound = Math.max(untrackedBound, weakest.getValue().upperBound());
+        }
+        counters.put(key, new Counter(weight, untrackedBound, companion));
+    }
+
+    /**
+     * Merges {@code other} into this sketch and returns {@code this}. Counted weights are summed; for
+     * a key tracked by only one side the other side's {@link #untrackedBound()} is added to its error.
+     * The merged sketch keeps the larger capacity of the two.
+     */
+    public TopKSketch<K> merge(TopKSketch<K> other) {
+        if (other == null || other == this) {
+            return this;
+        }
+        double ownBound = untrackedBound;
+        double otherBound = other.untrackedBound;
+        Set<K> keys = new HashSet<>(counters.keySet());
+        keys.addAll(other.counters.keySet());
+        Map<K, Counter> merged = new HashMap<>(keys.size() * 2);
+        for (K key : keys) {
+            Counter own = counters.get(key);
+            Counter theirs = other.counters.get(key);
+            merged.put(key, new Counter(
+                    (own != null ? own.weight : 0.0) + (theirs != null ? theirs.weight : 0.0),
+                    (own != null ? own.error : ownBound) + (theirs != null ? theirs.error : otherBound),
+                    (own != null ? own.companion : 0.0) + (theirs != null ? theirs.companion : 0.0)));
+        }
+        counters.clear();
+        counters.putAll(merged);
+        capacity = Math.max(capacity, other.capacity);
+        untrackedBound = ownBound + otherBound;
+        totalWeight += other.totalWeight;
+        truncate();
+        return this;
+    }
+
+    /**
+     * Tracked keys, heaviest first; {@code limit} caps the length of the list.
+     */
+    public List<Estimate<K>> top(int limit) {
+        List<Estimate<K>> estimates = new ArrayList<>(counters.size());
+        counters.forEach((key, counter) -> estimates.add(counter.toEstimate(key)));
+        estimates.sort(Estimate.byWeightDescending());
+        return List.copyOf(estimates.subList(0, Math.min(Math.max(0, limit), estimates.size())));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    /**
+     * Upper bound of the weight of any key that is not tracked; zero while nothing was dropped.
+     */
+    public double untrackedBound() {
+        return untrackedBound;
+    }
+
+    public double totalWeight() {
+        return totalWeight;
+    }
+
+    public TopKSketch<K> copy() {
+        TopKSketch<K> copy = new TopKSketch<>(capacity);
+        counters.forEach((key, counter) -> copy.counters.put(
+                key, new Counter(counter.weight, counter.error, counter.companion)));
+        copy.untrackedBound = untrackedBound;
+        copy.totalWeight = totalWeight;
+        return copy;
+    }
+
+    private void truncate() {
+        if (counters.size() <= capacity) {
+            return;
+        }
+        List<Estimate<K>> estimates = top(Integer.MAX_VALUE);
+        for (Estimate<K> dropped : estimates.subList(capacity, estimates.size())) {
+            counters.remove(dropped.key());
+            untrackedBound = Math.max(untrackedBound, dropped.upperBound());
+        }
+    }
+
+    private Map.Entry<K, Counter> weakest() {
+        Map.Entry<K, Counter> weakest = null;
+        // O(capacity) на вытеснение: ёмкость небольшая, а вытеснения редки для тяжёлых ключей
+        for (Map.Entry<K, Counter> entry : counters.entrySet()) {
+            if (weakest == null || entry.getValue().upperBound() < weakest.getValue().upperBound()) {
+                weakest = entry;
+            }
+        }
+        return weakest;
+    }
+
+    /**
+     * Estimated weight of a key; the true weight lies in {@code [weight, weight + error]}.
+     */
+    public record Estimate<K extends Comparable<K>>(K key, double weight, double error, double companion) {
+
+        public double upperBound() {
+            return weight + error;
+        }
+
+        public static <K extends Comparable<K>> Comparator<Estimate<K>> byWeightDescending() {
+            return Comparator.<Estimate<K>>comparingDouble(Estimate::weight)
+                    .reversed()
+                    .thenComparing(Comparator.<Estimate<K>>comparingDouble(Estimate::companion).reversed())
+                    .thenComparing(Estimate::key);
+        }
+    }
+
+    private static final class Counter {
+        private double weight;
+        private double error;
+        private double companion;
+
+        private Counter(double weight, double error, double companion) {
+            this.weight = weight;
+            this.error = error;
+            this.companion = companion;
+        }
+
+        private double upperBound() {
+            return weight + error;
+        }
+
+        private <K extends Comparable<K>> Estimate<K> toEstimate(K key) {
+            return new Estimate<>(key, weight, error, companion);
+        }
+    }
+}
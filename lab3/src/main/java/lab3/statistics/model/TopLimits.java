@@ -0,0 +1,57 @@
+package lab3.statistics.model;
+
+/**
+ * Lengths of the top lists in {@link ReceiptStatistics}, one per metric. Enum-keyed rankings
+ * (statuses, price tiers) are always reported in full.
+ */
+public record TopLimits(int customersBySpending, int customersByOrders, int items, int cities, int states) {
+
+    private static final TopLimits DEFAULTS = uniform(TopMetrics.DEFAULT_TOP_LIMIT);
+
+    public TopLimits {
+        if (customersBySpending < 0 || customersByOrders < 0 || items < 0 || cities < 0 || states < 0) {
+            throw new IllegalArgumentException("Top limits must not be negative");
+        }
+    }
+
+    public static TopLimits defaults() {
+        return DEFAULTS;
+    }
+
+    public static TopLimits uniform(int limit) {
+        return new TopLimits(limit, limit, limit, limit, limit);
+    }
+
+    /**
+     * The longer of the two lengths for every metric, e.g. for statistics merged from results with
+     * different limits.
+     */
+    public static TopLimits max(TopLimits a, TopLimits b) {
+        return new TopLimits(
+                Math.max(a.customersBySpending, b.customersBySpending),
+                Math.max(a.customersByOrders, b.customersByOrders),
+                Math.max(a.items, b.items),
+                Math.max(a.cities, b.cities),
+                Math.max(a.states, b.states));
+    }
+
+    public TopLimits withCustomersBySpending(int limit) {
+        return new TopLimits(limit, customersByOrders, items, cities, states);
+    }
+
+    public TopLimits withCustomersByOrders(int limit) {
+        return new TopLimits(customersBySpending, limit, items, cities, states);
+    }
+
+    public TopLimits withItems(int limit) {
+        return new TopLimits(customersBySpending, customersByOrders, limit, cities, states);
+    }
+
+    public TopLimits withCities(int limit) {
+        return new TopLimits(customersBySpending, customersByOrders, items, limit, states);
+    }
+
+    public TopLimits withStates(int limit) {
+        return new TopLimits(customersBySpending, customersByOrders, items, cities, limit);
+    }
+}
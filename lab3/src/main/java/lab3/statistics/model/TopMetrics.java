@@ -1,19 +1,30 @@
 package lab3.statistics.model;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
 
 import lab3.model.Receipt;
 import lab3.model.ReceiptStatus;
 
 /**
  * Utility class that turns aggregated maps into sorted top metrics lists.
+ *
+ * <p>Top lists are selected with a bounded heap of {@code limit} entries instead of sorting the
+ * whole map, i.e. in O(n log limit). Maps with at least {@value #PARALLEL_SELECTION_THRESHOLD}
+ * entries are scanned by a parallel stream: every segment keeps its own heap and the heaps are
+ * merged. All comparators are total orders, so the result is the same as with a full sort.
  */
 public final class TopMetrics {
 
     public static final int DEFAULT_TOP_LIMIT = 5;
+    public static final int PARALLEL_SELECTION_THRESHOLD = 1 << 16;
 
     private TopMetrics() {
     }
@@ -23,11 +34,9 @@ public final class TopMetrics {
     }
 
     public static List<CustomerSpending> calculateTopCustomers(Map<String, Double> spendingByCustomer, int limit) {
-        return spendingByCustomer.entrySet().stream()
+        return entries(spendingByCustomer)
                 .map(entry -> new CustomerSpending(entry.getKey(), entry.getValue()))
-                .sorted(CustomerSpending.byTotalSpentDescending())
-                .limit(limit)
-                .toList();
+                .collect(top(CustomerSpending.byTotalSpentDescending(), limit));
     }
 
     public static List<ItemSales> calculateTopItems(Map<String, Long> quantityByItem,
@@ -39,14 +48,12 @@ public final class TopMetrics {
             Map<String, Long> quantityByItem,
             Map<String, Double> revenueByItem,
             int limit) {
-        return quantityByItem.entrySet().stream()
+        return entries(quantityByItem)
                 .map(entry -> new ItemSales(
                         entry.getKey(),
                         entry.getValue(),
                         revenueByItem.getOrDefault(entry.getKey(), 0.0)))
-                .sorted(ItemSales.byQuantityAndRevenueDescending())
-                .limit(limit)
-                .toList();
+                .collect(top(ItemSales.byQuantityAndRevenueDescending(), limit));
     }
 
     public static List<ItemAverageReceipt> calculateItemAverageReceipts(List<Receipt> receipts) {
@@ -68,14 +75,12 @@ public final class TopMetrics {
             Map<String, Double> revenueByCity,
             Map<String, Long> ordersByCity,
             int limit) {
-        return revenueByCity.entrySet().stream()
+        return entries(revenueByCity)
                 .map(entry -> new CityRevenue(
                         entry.getKey(),
                         entry.getValue(),
                         ordersByCity.getOrDefault(entry.getKey(), 0L)))
-                .sorted(CityRevenue.byRevenueAndOrdersDescending())
-                .limit(limit)
-                .toList();
+                .collect(top(CityRevenue.byRevenueAndOrdersDescending(), limit));
     }
 
     public static List<CustomerOrderProfile> calculateTopCustomersByOrders(
@@ -88,7 +93,7 @@ public final class TopMetrics {
             Map<String, Long> ordersByCustomer,
             Map<String, Double> revenueByCustomer,
             int limit) {
-        return ordersByCustomer.entrySet().stream()
+        return entries(ordersByCustomer)
                 .map(entry -> {
                     String customer = entry.getKey();
                     long orders = entry.getValue();
@@ -96,9 +101,7 @@ public final class TopMetrics {
                     double averageOrderValue = orders > 0 ? totalSpent / orders : 0.0;
                     return new CustomerOrderProfile(customer, orders, totalSpent, averageOrderValue);
                 })
-                .sorted(CustomerOrderProfile.byOrdersAndSpendingDescending())
-                .limit(limit)
-                .toList();
+                .collect(top(CustomerOrderProfile.byOrdersAndSpendingDescending(), limit));
     }
 
     public static List<StatusRevenue> calculateStatusRevenue(
@@ -138,13 +141,137 @@ public final class TopMetrics {
     public static List<StateRevenue> calculateTopStates(
             Map<String, Double> revenueByState,
             Map<String, Long> ordersByState) {
-        return revenueByState.entrySet().stream()
+        return calculateTopStates(revenueByState, ordersByState, DEFAULT_TOP_LIMIT);
+    }
+
+    public static List<StateRevenue> calculateTopStates(
+            Map<String, Double> revenueByState,
+            Map<String, Long> ordersByState,
+            int limit) {
+        return entries(revenueByState)
                 .map(entry -> new StateRevenue(
                         entry.getKey(),
                         entry.getValue(),
                         ordersByState.getOrDefault(entry.getKey(), 0L)))
-                .sorted(StateRevenue.byRevenueDescending())
-                .limit(DEFAULT_TOP_LIMIT)
+                .collect(top(StateRevenue.byRevenueDescending(), limit));
+    }
+
+    /**
+     * Exact {@link TopKSketch} of complete totals: keeps the {@code capacity} heaviest keys, with
+     * their companion sums, and bounds the left-out keys by the lightest kept one.
+     */
+    public static <K extends Comparable<K>> TopKSketch<K> sketch(
+            Map<K, ? extends Number> weights,
+            Map<K, ? extends Number> companions,
+            int capacity) {
+        List<TopKSketch.Estimate<K>> kept = entries(weights)
+                .map(entry -> {
+                    Number companion = companions.get(entry.getKey());
+                    return new TopKSketch.Estimate<>(
+                            entry.getKey(),
+                            entry.getValue().doubleValue(),
+                            0.0,
+                            companion != null ? companion.doubleValue() : 0.0);
+                })
+                .collect(top(TopKSketch.Estimate.byWeightDescending(), capacity));
+        double untrackedBound = weights.size() > kept.size() ? kept.get(kept.size() - 1).weight() : 0.0;
+        double totalWeight = weights.values().stream().mapToDouble(Number::doubleValue).sum();
+        return TopKSketch.of(capacity, kept, untrackedBound, totalWeight);
+    }
+
+    public static List<CustomerSpending> topCustomers(TopKSketch<String> spending, int limit) {
+        return spending.top(limit).stream()
+                .map(estimate -> new CustomerSpending(estimate.key(), estimate.weight()))
+                .toList();
+    }
+
+    public static List<CustomerOrderProfile> topCustomersByOrders(TopKSketch<String> orders, int limit) {
+        return orders.top(limit).stream()
+                .map(estimate -> {
+                    long ordersCount = (long) estimate.weight();
+                    double totalSpent = estimate.companion();
+                    double averageOrderValue = ordersCount > 0 ? totalSpent / ordersCount : 0.0;
+                    return new CustomerOrderProfile(estimate.key(), ordersCount, totalSpent, averageOrderValue);
+                })
                 .toList();
     }
+
+    public static List<ItemSales> topItems(TopKSketch<String> quantity, int limit) {
+        return quantity.top(limit).stream()
+                .map(estimate -> new ItemSales(estimate.key(), (long) estimate.weight(), estimate.companion()))
+                .toList();
+    }
+
+    public static List<CityRevenue> topCities(TopKSketch<String> revenue, int limit) {
+        return revenue.top(limit).stream()
+                .map(estimate -> new CityRevenue(estimate.key(), estimate.weight(), (long) estimate.companion()))
+                .toList();
+    }
+
+    public static List<StateRevenue> topStates(TopKSketch<String> revenue, int limit) {
+        return revenue.top(limit).stream()
+                .map(estimate -> new StateRevenue(estimate.key(), estimate.weight(), (long) estimate.companion()))
+                .toList();
+    }
+
+    /**
+     * Collects the first {@code limit} elements in the given order, sorted, keeping only a heap of
+     * {@code limit} candidates. In a parallel stream every segment fills its own heap and the heaps
+     * are merged, so the collector scales like a plain reduction.
+     */
+    public static <T> Collector<T, ?, List<T>> top(Comparator<? super T> order, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        return Collector.of(
+                () -> new BoundedHeap<T>(order, limit),
+                BoundedHeap::offer,
+                BoundedHeap::merge,
+                BoundedHeap::toSortedList,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    private static <K, V> Stream<Map.Entry<K, V>> entries(Map<K, V> map) {
+        return map.size() >= PARALLEL_SELECTION_THRESHOLD
+                ? map.entrySet().parallelStream()
+                : map.entrySet().stream();
+    }
+
+    /**
+     * Min-heap (with respect to {@code order}) of the best {@code limit} elements seen so far;
+     * its head is the weakest candidate and is evicted by any better element.
+     */
+    private static final class BoundedHeap<T> {
+        private final Comparator<? super T> order;
+        private final int limit;
+        private final PriorityQueue<T> heap;
+
+        private BoundedHeap(Comparator<? super T> order, int limit) {
+            this.order = order;
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.max(1, limit), order.reversed());
+        }
+
+        private void offer(T element) {
+            if (heap.size() < limit) {
+                heap.add(element);
+            } else if (limit > 0 && order.compare(element, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(element);
+            }
+        }
+
+        private BoundedHeap<T> merge(BoundedHeap<T> other) {
+            for (T element : other.heap) {
+                offer(element);
+            }
+            return this;
+        }
+
+        private List<T> toSortedList() {
+            List<T> sorted = new ArrayList<>(heap);
+            sorted.sort(order);
+            return List.copyOf(sorted);
+        }
+    }
 }
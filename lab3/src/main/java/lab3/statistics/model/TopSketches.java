@@ -0,0 +1,67 @@
+package lab3.statistics.model;
+
+/**
+ * Mergeable summaries behind the top lists of {@link ReceiptStatistics}. Weights and companions:
+ * customers by spending (spending), customers by orders (orders, spending), items (quantity,
+ * revenue), cities and states (revenue, orders).
+ */
+public record TopSketches(
+        TopKSketch<String> customersBySpending,
+        TopKSketch<String> customersByOrders,
+        TopKSketch<String> items,
+        TopKSketch<String> cities,
+        TopKSketch<String> states) {
+
+    public static TopSketches empty() {
+        return new TopSketches(
+                new TopKSketch<>(TopKSketch.DEFAULT_CAPACITY),
+                new TopKSketch<>(TopKSketch.DEFAULT_CAPACITY),
+                new TopKSketch<>(TopKSketch.DEFAULT_CAPACITY),
+                new TopKSketch<>(TopKSketch.DEFAULT_CAPACITY),
+                new TopKSketch<>(TopKSketch.DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Sketch capacity for the given list lengths: well above the longest list, so that the reported
+     * entries of merged results stay exact unless the distribution is very flat.
+     */
+    public static int capacityFor(TopLimits limits) {
+        int longest = Math.max(Math.max(limits.customersBySpending(), limits.customersByOrders()),
+                Math.max(limits.items(), Math.max(limits.cities(), limits.states())));
+        return Math.max(TopKSketch.DEFAULT_CAPACITY, 8 * longest);
+    }
+
+    /**
+     * {@code true} if no sketch has counted anything yet, like {@link #empty()}.
+     */
+    public boolean isEmpty() {
+        return customersBySpending.size() == 0 && customersByOrders.size() == 0
+                && items.size() == 0 && cities.size() == 0 && states.size() == 0;
+    }
+
+    /**
+     * Returns new sketches summarising both operands; neither operand is modified. Each merged
+     * sketch has the larger capacity of the two.
+     */
+    public TopSketches merge(TopSketches other) {
+        return new TopSketches(
+                customersBySpending.copy().merge(other.customersBySpending),
+                customersByOrders.copy().merge(other.customersByOrders),
+                items.copy().merge(other.items),
+                cities.copy().merge(other.cities),
+                states.copy().merge(other.states));
+    }
+
+    /**
+     * Stores the sketches in {@code stats} and finishes its top lists from them.
+     */
+    public void applyTo(ReceiptStatistics stats, TopLimits limits) {
+        stats.setTopSketches(this);
+        stats.setTopLimits(limits);
+        stats.setTopCustomersBySpending(TopMetrics.topCustomers(customersBySpending, limits.customersBySpending()));
+        stats.setTopCustomersByOrderCount(TopMetrics.topCustomersByOrders(customersByOrders, limits.customersByOrders()));
+        stats.setTopItemsByQuantity(TopMetrics.topItems(items, limits.items()));
+        stats.setTopCitiesByRevenue(TopMetrics.topCities(cities, limits.cities()));
+        stats.setTopStatesByRevenue(TopMetrics.topStates(states, limits.states()));
+    }
+}
@@ -0,0 +1,9 @@
+package lab3.statistics.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Statistics of the receipts whose event time falls into {@code [windowStart, windowEnd)}.
+ */
+public record WindowedReceiptStatistics(LocalDateTime windowStart, LocalDateTime windowEnd, ReceiptStatistics statistics) {
+}
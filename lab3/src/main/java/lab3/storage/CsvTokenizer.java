@@ -0,0 +1,123 @@
+package lab3.storage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Minimal RFC 4180 tokenizer: comma-separated fields, optional double quotes with {@code ""} as an
+ * escaped quote, LF or CRLF record ends. It reads through a fixed char buffer, so memory use does
+ * not depend on the input size.
+ */
+final class CsvTokenizer implements AutoCloseable {
+
+    private static final int BUFFER_CHARS = 1 << 16;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_CHARS];
+    private int position;
+    private int limit;
+    private char[] field = new char[64];
+    private int fieldLength;
+    private long charsRead;
+
+    CsvTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next record into {@code fields}; fields beyond its length are counted but dropped.
+     *
+     * @return number of fields in the record, or -1 at the end of input
+     */
+    int nextRecord(String[] fields) throws IOException {
+        int c = read();
+        if (c < 0) {
+            return -1;
+        }
+        int count = 0;
+        while (true) {
+            fieldLength = 0;
+            if (c == '"') {
+                c = readQuoted();
+            } else {
+                while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+                    append((char) c);
+                    c = read();
+                }
+            }
+            if (count < fields.length) {
+                fields[count] = new String(field, 0, fieldLength);
+            }
+            count++;
+            if (c == ',') {
+                c = read();
+                continue;
+            }
+            if (c == '\r' && peek() == '\n') {
+                read();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Characters consumed so far, for throughput accounting.
+     */
+    long charsRead() {
+        return charsRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int readQuoted() throws IOException {
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw new IllegalStateException("Unterminated quoted CSV field");
+            }
+            if (c == '"') {
+                int next = read();
+                if (next != '"') {
+                    return next;
+                }
+            }
+            append((char) c);
+        }
+    }
+
+    private void append(char c) {
+        if (fieldLength == field.length) {
+            field = Arrays.copyOf(field, field.length * 2);
+        }
+        field[fieldLength++] = c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        charsRead += read;
+        return true;
+    }
+}
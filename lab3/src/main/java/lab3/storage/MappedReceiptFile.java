@@ -0,0 +1,389 @@
+package lab3.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import lab3.model.Customer;
+import lab3.model.Item;
+import lab3.model.Receipt;
+import lab3.model.ReceiptStatus;
+import lab3.model.ShippingAddress;
+import lab3.statistics.columnar.ReceiptBatch;
+
+import lab3.storage.ReceiptFileFormat.Layout;
+
+/**
+ * Read-only view of a receipt file (see {@link ReceiptFileFormat}). Every column is a separately
+ * memory-mapped buffer, so opening the file costs only the string dictionary decoding; column values
+ * are read with absolute gets, which are safe to call from several threads.
+ *
+ * <p>The data can be consumed as a {@link ReceiptBatch} ({@link #toBatch()}: numeric columns are
+ * bulk-copied, strings are re-encoded per column through the already decoded dictionary, no
+ * {@link Receipt} is created) or as a {@link Spliterator} that builds each receipt only when it is
+ * consumed ({@link #spliterator()}).
+ */
+public final class MappedReceiptFile {
+
+    private static final ReceiptStatus[] STATUSES = ReceiptStatus.values();
+    private static final long SECONDS_PER_DAY = 86_400L;
+
+    private final Layout layout;
+    private final ByteBuffer date;
+    private final ByteBuffer unitPrice;
+    private final ByteBuffer itemOffset;
+    private final ByteBuffer loyaltyPoints;
+    private final ByteBuffer[] receiptStrings;
+    private final ByteBuffer itemName;
+    private final ByteBuffer quantity;
+    private final ByteBuffer status;
+    private final String[] strings;
+
+    private MappedReceiptFile(FileChannel channel, Layout layout) throws IOException {
+        this.layout = layout;
+        this.date = map(channel, layout.dateOffset(), 8L * layout.receiptCount());
+        this.unitPrice = map(channel, layout.unitPriceOffset(), 8L * layout.itemCount());
+        this.itemOffset = map(channel, layout.itemOffsetOffset(), 4L * (layout.receiptCount() + 1L));
+        this.loyaltyPoints = map(channel, layout.loyaltyPointsOffset(), 4L * layout.receiptCount());
+        this.receiptStrings = new ByteBuffer[ReceiptFileFormat.RECEIPT_STRING_COLUMNS];
+        for (int column = 0; column < receiptStrings.length; column++) {
+            receiptStrings[column] = map(channel, layout.receiptStringOffset(column), 4L * layout.receiptCount());
+        }
+        this.itemName = map(channel, layout.itemNameOffset(), 4L * layout.itemCount());
+        this.quantity = map(channel, layout.quantityOffset(), 4L * layout.itemCount());
+        this.status = map(channel, layout.statusOffset(), layout.receiptCount());
+        this.strings = readStrings(channel, layout);
+    }
+
+    public static MappedReceiptFile open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // отображение остаётся валидным и после закрытия канала
+            return new MappedReceiptFile(channel, readLayout(channel, path));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read receipt dataset " + path, e);
+        }
+    }
+
+    public int receiptCount() {
+        return layout.receiptCount();
+    }
+
+    public int itemCount() {
+        return layout.itemCount();
+    }
+
+    /**
+     * Materialises the receipt with the given index.
+     */
+    public Receipt receipt(int r) {
+        Receipt receipt = new Receipt();
+        receipt.setId(string(ReceiptFileFormat.ID, r));
+        long epochSecond = epochSecond(r);
+        receipt.setDate(epochSecond == ReceiptFileFormat.NULL_DATE
+                ? null
+                : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC));
+        int status = statusOrdinal(r);
+        receipt.setStatus(status < 0 ? null : STATUSES[status]);
+        receipt.setLoyaltyPointsEarned(loyaltyPoints(r));
+
+        // отсутствующий клиент или адрес записан как null во всех его колонках
+        if (!allNull(r, ReceiptFileFormat.FIRST_NAME, ReceiptFileFormat.LAST_NAME)) {
+            Customer customer = new Customer();
+            customer.setFirstName(string(ReceiptFileFormat.FIRST_NAME, r));
+            customer.setLastName(string(ReceiptFileFormat.LAST_NAME, r));
+            receipt.setCustomer(customer);
+        }
+        if (!allNull(r, ReceiptFileFormat.ADDRESS_LINE_1, ReceiptFileFormat.COUNTRY)) {
+            receipt.setShippingAddress(new ShippingAddress(
+                    string(ReceiptFileFormat.ADDRESS_LINE_1, r),
+                    string(ReceiptFileFormat.ADDRESS_LINE_2, r),
+                    string(ReceiptFileFormat.CITY, r),
+                    string(ReceiptFileFormat.STATE, r),
+                    string(ReceiptFileFormat.POSTAL_CODE, r),
+                    string(ReceiptFileFormat.COUNTRY, r)));
+        }
+
+        int start = itemStart(r);
+        int end = itemEnd(r);
+        List<Item> items = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            Item item = new Item();
+            item.setName(string(itemNameRef(i)));
+            item.setQuantity(quantity(i));
+            item.setUnitPrice(unitPrice(i));
+            items.add(item);
+        }
+        receipt.setItems(items);
+        return receipt;
+    }
+
+    private boolean allNull(int receipt, int firstColumn, int lastColumn) {
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            if (stringRef(column, receipt) != ReceiptFileFormat.NULL_REF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Receipts in file order, each created on demand; splits by index range for parallel streams.
+     */
+    public Spliterator<Receipt> spliterator() {
+        return new ReceiptFileSpliterator(0, receiptCount());
+    }
+
+    public Stream<Receipt> stream(boolean parallel) {
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
+    /**
+     * Converts the file into the columnar layout used by {@code ReceiptStatisticsColumnarAggregator}.
+     * Like {@link ReceiptBatch#from}, it requires every receipt to have a date, status, customer and
+     * shipping address.
+     */
+    public ReceiptBatch toBatch() {
+        int size = receiptCount();
+        int items = itemCount();
+        int[] itemOffsets = new int[size + 1];
+        itemOffset.asIntBuffer().get(0, itemOffsets);
+        double[] unitPrices = new double[items];
+        unitPrice.asDoubleBuffer().get(0, unitPrices);
+        int[] quantities = new int[items];
+        quantity.asIntBuffer().get(0, quantities);
+        int[] loyalty = new int[size];
+        loyaltyPoints.asIntBuffer().get(0, loyalty);
+
+        int[] statusOrdinals = new int[size];
+        int[] months = new int[size];
+        for (int r = 0; r < size; r++) {
+            statusOrdinals[r] = statusOrdinal(r);
+            long epochSecond = epochSecond(r);
+            if (statusOrdinals[r] < 0 || epochSecond == ReceiptFileFormat.NULL_DATE) {
+                throw new IllegalStateException("Receipt " + r + " has no status or date");
+            }
+            months[r] = LocalDate.ofEpochDay(Math.floorDiv(epochSecond, SECONDS_PER_DAY)).getMonthValue();
+        }
+
+        ColumnDictionary itemNames = new ColumnDictionary();
+        int[] itemNameIds = new int[items];
+        for (int i = 0; i < items; i++) {
+            itemNameIds[i] = itemNames.idOf(itemNameRef(i));
+        }
+        ColumnDictionary cities = new ColumnDictionary();
+        ColumnDictionary states = new ColumnDictionary();
+        int[] cityIds = new int[size];
+        int[] stateIds = new int[size];
+        Map<Long, Integer> customerIds = new HashMap<>();
+        List<String> customerNames = new ArrayList<>();
+        int[] customerIdColumn = new int[size];
+        for (int r = 0; r < size; r++) {
+            cityIds[r] = cities.idOf(stringRef(ReceiptFileFormat.CITY, r));
+            stateIds[r] = states.idOf(stringRef(ReceiptFileFormat.STATE, r));
+            int firstName = stringRef(ReceiptFileFormat.FIRST_NAME, r);
+            int lastName = stringRef(ReceiptFileFormat.LAST_NAME, r);
+            // клиент — пара ссылок на словарь, строку "имя фамилия" собираем один раз на клиента
+            long customerKey = ((long) firstName << 32) | (lastName & 0xFFFF_FFFFL);
+            Integer id = customerIds.get(customerKey);
+            if (id == null) {
+                id = customerNames.size();
+                customerIds.put(customerKey, id);
+                customerNames.add(string(firstName) + " " + string(lastName));
+            }
+            customerIdColumn[r] = id;
+        }
+
+        return ReceiptBatch.ofColumns(size, itemOffsets, unitPrices, quantities, itemNameIds, statusOrdinals,
+                months, loyalty, customerIdColumn, cityIds, stateIds,
+                itemNames.names(), customerNames.toArray(String[]::new), cities.names(), states.names());
+    }
+
+    long epochSecond(int receipt) {
+        return date.getLong(8 * receipt);
+    }
+
+    int itemStart(int receipt) {
+        return itemOffset.getInt(4 * receipt);
+    }
+
+    int itemEnd(int receipt) {
+        return itemOffset.getInt(4 * (receipt + 1));
+    }
+
+    int loyaltyPoints(int receipt) {
+        return loyaltyPoints.getInt(4 * receipt);
+    }
+
+    int statusOrdinal(int receipt) {
+        return status.get(receipt);
+    }
+
+    /**
+     * Dictionary id of a receipt string column (see {@link ReceiptFileFormat#ID} and friends).
+     */
+    int stringRef(int column, int receipt) {
+        return receiptStrings[column].getInt(4 * receipt);
+    }
+
+    String string(int column, int receipt) {
+        return string(stringRef(column, receipt));
+    }
+
+    int itemNameRef(int item) {
+        return itemName.getInt(4 * item);
+    }
+
+    int quantity(int item) {
+        return quantity.getInt(4 * item);
+    }
+
+    double unitPrice(int item) {
+        return unitPrice.getDouble(8 * item);
+    }
+
+    String string(int ref) {
+        return ref == ReceiptFileFormat.NULL_REF ? null : strings[ref];
+    }
+
+    /**
+     * Re-encodes references into the file-wide dictionary as dense ids of one column.
+     */
+    private final class ColumnDictionary {
+        private final int[] idByRef = new int[strings.length];
+        private final List<String> names = new ArrayList<>();
+
+        private ColumnDictionary() {
+            Arrays.fill(idByRef, -1);
+        }
+
+        int idOf(int ref) {
+            if (ref == ReceiptFileFormat.NULL_REF) {
+                throw new IllegalStateException("Columnar batches do not support missing names");
+            }
+            int id = idByRef[ref];
+            if (id < 0) {
+                id = names.size();
+                idByRef[ref] = id;
+                names.add(strings[ref]);
+            }
+            return id;
+        }
+
+        String[] names() {
+            return names.toArray(String[]::new);
+        }
+    }
+
+    private final class ReceiptFileSpliterator implements Spliterator<Receipt> {
+        private int index;
+        private final int end;
+
+        private ReceiptFileSpliterator(int index, int end) {
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Receipt> action) {
+            if (index >= end) {
+                return false;
+            }
+            action.accept(receipt(index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Receipt> action) {
+            for (; index < end; index++) {
+                action.accept(receipt(index));
+            }
+        }
+
+        @Override
+        public Spliterator<Receipt> trySplit() {
+            int middle = (index + end) >>> 1;
+            if (middle <= index) {
+                return null;
+            }
+            Spliterator<Receipt> prefix = new ReceiptFileSpliterator(index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    private static Layout readLayout(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(ReceiptFileFormat.HEADER_BYTES).order(ReceiptFileFormat.BYTE_ORDER);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IllegalStateException("Truncated receipt dataset header: " + path);
+            }
+        }
+        header.flip();
+        if (header.getInt() != ReceiptFileFormat.MAGIC) {
+            throw new IllegalStateException("Not a receipt dataset: " + path);
+        }
+        int version = header.getInt();
+        if (version != ReceiptFileFormat.VERSION) {
+            throw new IllegalStateException("Unsupported receipt dataset version " + version + ": " + path);
+        }
+        int receiptCount = header.getInt();
+        int itemCount = header.getInt();
+        int stringCount = header.getInt();
+        header.getInt(); // reserved
+        long stringBytes = header.getLong();
+        Layout layout = new Layout(receiptCount, itemCount, stringCount, stringBytes);
+        if (channel.size() < layout.fileSize()) {
+            throw new IllegalStateException("Truncated receipt dataset: " + path);
+        }
+        return layout;
+    }
+
+    private static String[] readStrings(FileChannel channel, Layout layout) throws IOException {
+        ByteBuffer offsets = map(channel, layout.stringOffsetOffset(), 8L * (layout.stringCount() + 1L));
+        ByteBuffer data = map(channel, layout.stringDataOffset(), layout.stringBytes());
+        String[] strings = new String[layout.stringCount()];
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < strings.length; i++) {
+            int start = (int) offsets.getLong(8 * i);
+            int length = (int) offsets.getLong(8 * (i + 1)) - start;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            data.get(start, scratch, 0, length);
+            strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Receipt dataset section exceeds 2 GiB: " + length + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ReceiptFileFormat.BYTE_ORDER);
+    }
+}
@@ -0,0 +1,446 @@
+package lab3.storage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import io.reactivex.rxjava3.core.Flowable;
+import lab3.model.Customer;
+import lab3.model.Item;
+import lab3.model.Receipt;
+import lab3.model.ReceiptStatus;
+import lab3.model.ShippingAddress;
+
+/**
+ * Receipt CSV files with one row per line item; the receipt columns are repeated on every row of
+ * the receipt and consecutive rows with the same {@code receipt_id} form one receipt. A receipt
+ * without items is written as a single row with empty item columns. Empty fields read back as
+ * {@code null}.
+ *
+ * <p>Reading is incremental: receipts are parsed one at a time while the stream or {@link Flowable}
+ * is consumed, so the heap only holds the tokenizer buffer and the receipts in flight.
+ * {@link #collectParallel} keeps that bound with several aggregating threads: the file is parsed on
+ * the calling thread and handed to a fixed set of workers through a bounded queue.
+ */
+public final class ReceiptCsv {
+
+    static final String[] HEADER = {
+            "receipt_id", "date", "status", "loyalty_points",
+            "first_name", "last_name",
+            "address_line1", "address_line2", "city", "state", "postal_code", "country",
+            "item_name", "quantity", "unit_price"
+    };
+
+    private static final int RECEIPT_ID = 0;
+    private static final int DATE = 1;
+    private static final int STATUS = 2;
+    private static final int LOYALTY_POINTS = 3;
+    private static final int FIRST_NAME = 4;
+    private static final int LAST_NAME = 5;
+    private static final int ADDRESS_LINE_1 = 6;
+    private static final int ADDRESS_LINE_2 = 7;
+    private static final int CITY = 8;
+    private static final int STATE = 9;
+    private static final int POSTAL_CODE = 10;
+    private static final int COUNTRY = 11;
+    private static final int ITEM_NAME = 12;
+    private static final int QUANTITY = 13;
+    private static final int UNIT_PRICE = 14;
+
+    /**
+     * Receipts handed to a worker of {@link #collectParallel} at once.
+     */
+    private static final int BATCH_SIZE = 1024;
+
+    /**
+     * Parsed batches that may wait in the queue per worker before parsing blocks.
+     */
+    private static final int QUEUED_BATCHES_PER_WORKER = 2;
+
+    // маркер конца файла, сравнивается по ссылке
+    private static final List<Receipt> END_OF_FILE = new ArrayList<>(0);
+
+    private ReceiptCsv() {
+    }
+
+    public static void write(Path path, Iterable<Receipt> receipts) {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(writer, receipts);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write receipt CSV " + path, e);
+        }
+    }
+
+    public static void write(Writer writer, Iterable<Receipt> receipts) throws IOException {
+        String[] row = new String[HEADER.length];
+        writeRow(writer, HEADER);
+        for (Receipt receipt : receipts) {
+            row[RECEIPT_ID] = receipt.getId();
+            row[DATE] = receipt.getDate() == null ? null : receipt.getDate().toString();
+            row[STATUS] = receipt.getStatus() == null ? null : receipt.getStatus().name();
+            row[LOYALTY_POINTS] = Integer.toString(receipt.getLoyaltyPointsEarned());
+            Customer customer = receipt.getCustomer();
+            row[FIRST_NAME] = customer == null ? null : customer.getFirstName();
+            row[LAST_NAME] = customer == null ? null : customer.getLastName();
+            ShippingAddress address = receipt.getShippingAddress();
+            row[ADDRESS_LINE_1] = address == null ? null : address.addressLine1();
+            row[ADDRESS_LINE_2] = address == null ? null : address.addressLine2();
+            row[CITY] = address == null ? null : address.city();
+            row[STATE] = address == null ? null : address.state();
+            row[POSTAL_CODE] = address == null ? null : address.postalCode();
+            row[COUNTRY] = address == null ? null : address.country();
+            List<Item> items = receipt.getItems() == null ? List.of() : receipt.getItems();
+            if (items.isEmpty()) {
+                row[ITEM_NAME] = row[QUANTITY] = row[UNIT_PRICE] = null;
+                writeRow(writer, row);
+            }
+            for (Item item : items) {
+                row[ITEM_NAME] = item.getName();
+                row[QUANTITY] = Integer.toString(item.getQuantity());
+                row[UNIT_PRICE] = Double.toString(item.getUnitPrice());
+                writeRow(writer, row);
+            }
+        }
+    }
+
+    /**
+     * Lazily parsed receipts in file order; close the stream to close the file. The stream is
+     * sequential: a parallel stream of unknown size would keep a partial result per split until the
+     * end of the file, so use {@link #collectParallel} to aggregate on several threads.
+     */
+    public static Stream<Receipt> stream(Path path) {
+        Parser parser = new Parser(open(path));
+        return StreamSupport.stream(new ReceiptCsvSpliterator(parser), false)
+                .onClose(parser::close);
+    }
+
+    /**
+     * Parses on the calling thread and aggregates on {@code workers} platform threads, each folding
+     * the batches it takes into its own container of {@code collector}; the containers are combined
+     * once at the end. Parsing waits while {@value #QUEUED_BATCHES_PER_WORKER} batches of
+     * {@value #BATCH_SIZE} receipts per worker are queued, so the heap holds the tokenizer buffer, a
+     * bounded number of parsed receipts and one container per worker, however large the file is.
+     * Receipts reach the containers out of file order.
+     */
+    public static <A, R> R collectParallel(Path path, Collector<? super Receipt, A, R> collector, int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("workers must be positive: " + workers);
+        }
+        BlockingQueue<List<Receipt>> queue = new ArrayBlockingQueue<>(workers * QUEUED_BATCHES_PER_WORKER);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Future<A>> containers = new ArrayList<>(workers);
+
+        // close() дожидается воркеров, поэтому после выхода из try все контейнеры готовы
+        try (ExecutorService executor = Executors.newFixedThreadPool(workers)) {
+            for (int i = 0; i < workers; i++) {
+                containers.add(executor.submit(() -> accumulate(queue, collector, failure)));
+            }
+            Parser parser = null;
+            try {
+                parser = new Parser(open(path));
+                List<Receipt> batch = new ArrayList<>(BATCH_SIZE);
+                Receipt receipt;
+                while (failure.get() == null && (receipt = parser.next()) != null) {
+                    batch.add(receipt);
+                    if (batch.size() == BATCH_SIZE) {
+                        putUninterruptibly(queue, batch);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    putUninterruptibly(queue, batch);
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                for (int i = 0; i < workers; i++) {
+                    putUninterruptibly(queue, END_OF_FILE);
+                }
+                if (parser != null) {
+                    parser.close();
+                }
+            }
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Unable to aggregate receipt CSV " + path, failure.get());
+        }
+
+        A result = containers.get(0).resultNow();
+        for (int i = 1; i < workers; i++) {
+            result = collector.combiner().apply(result, containers.get(i).resultNow());
+        }
+        return collector.finisher().apply(result);
+    }
+
+    /**
+     * Cold {@link Flowable} that parses one receipt per request, so backpressure reaches the file.
+     */
+    public static Flowable<Receipt> flowable(Path path) {
+        return Flowable.generate(
+                () -> new Parser(open(path)),
+                (parser, emitter) -> {
+                    Receipt receipt = parser.next();
+                    if (receipt == null) {
+                        emitter.onComplete();
+                    } else {
+                        emitter.onNext(receipt);
+                    }
+                },
+                Parser::close);
+    }
+
+    /**
+     * Folds batches into a fresh container until the end marker. After a failure anywhere the worker
+     * keeps draining the queue, so parsing never blocks on a full queue.
+     */
+    private static <A> A accumulate(
+            BlockingQueue<List<Receipt>> queue,
+            Collector<? super Receipt, A, ?> collector,
+            AtomicReference<Throwable> failure) throws InterruptedException {
+        A container = collector.supplier().get();
+        BiConsumer<A, ? super Receipt> accumulator = collector.accumulator();
+        List<Receipt> batch;
+        while ((batch = queue.take()) != END_OF_FILE) {
+            if (failure.get() != null) {
+                continue;
+            }
+            try {
+                for (Receipt receipt : batch) {
+                    accumulator.accept(container, receipt);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        }
+        return container;
+    }
+
+    private static void putUninterruptibly(BlockingQueue<List<Receipt>> queue, List<Receipt> batch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(batch);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Reader open(Path path) {
+        try {
+            return Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read receipt CSV " + path, e);
+        }
+    }
+
+    private static void writeRow(Writer writer, String[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = row[i];
+            if (value == null) {
+                continue;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Turns CSV rows into receipts. Not thread-safe; only the reading thread uses it.
+     */
+    static final class Parser {
+        private final CsvTokenizer tokenizer;
+        private final String[] row = new String[HEADER.length];
+        private final int[] columnOf = new int[HEADER.length];
+        private final String[] pending;
+        private boolean hasPending;
+
+        Parser(Reader reader) {
+            this.tokenizer = new CsvTokenizer(reader);
+            String[] header = new String[64];
+            int count = readRow(header);
+            for (int column = 0; column < HEADER.length; column++) {
+                columnOf[column] = indexOf(header, count, HEADER[column]);
+            }
+            this.pending = new String[Math.max(count, HEADER.length)];
+            hasPending = readOrdered(pending);
+        }
+
+        /**
+         * @return the next receipt, or {@code null} at the end of the file
+         */
+        Receipt next() {
+            if (!hasPending) {
+                return null;
+            }
+            Receipt receipt = toReceipt(pending);
+            List<Item> items = new ArrayList<>();
+            String receiptId = pending[RECEIPT_ID];
+            addItem(items, pending);
+            while ((hasPending = readOrdered(pending)) && sameReceipt(receiptId, pending[RECEIPT_ID])) {
+                addItem(items, pending);
+            }
+            receipt.setItems(items);
+            return receipt;
+        }
+
+        long charsRead() {
+            return tokenizer.charsRead();
+        }
+
+        void close() {
+            try {
+                tokenizer.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private boolean readOrdered(String[] target) {
+            int count;
+            do {
+                count = readRow(row);
+                if (count < 0) {
+                    return false;
+                }
+            } while (count == 1 && row[0].isEmpty()); // пустые строки пропускаем
+            for (int column = 0; column < HEADER.length; column++) {
+                int index = columnOf[column];
+                target[column] = index < count ? emptyToNull(row[index]) : null;
+            }
+            return true;
+        }
+
+        private int readRow(String[] target) {
+            try {
+                return tokenizer.nextRecord(target);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static int indexOf(String[] header, int count, String name) {
+            for (int i = 0; i < Math.min(count, header.length); i++) {
+                if (name.equals(header[i])) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Receipt CSV has no column " + name);
+        }
+
+        private static boolean sameReceipt(String receiptId, String other) {
+            return receiptId == null ? other == null : receiptId.equals(other);
+        }
+
+        private static String emptyToNull(String value) {
+            return value.isEmpty() ? null : value;
+        }
+
+        private static Receipt toReceipt(String[] fields) {
+            Receipt receipt = new Receipt();
+            receipt.setId(fields[RECEIPT_ID]);
+            receipt.setDate(fields[DATE] == null ? null : LocalDateTime.parse(fields[DATE]));
+            receipt.setStatus(fields[STATUS] == null ? null : ReceiptStatus.valueOf(fields[STATUS]));
+            receipt.setLoyaltyPointsEarned(fields[LOYALTY_POINTS] == null ? 0 : Integer.parseInt(fields[LOYALTY_POINTS]));
+            if (fields[FIRST_NAME] != null || fields[LAST_NAME] != null) {
+                Customer customer = new Customer();
+                customer.setFirstName(fields[FIRST_NAME]);
+                customer.setLastName(fields[LAST_NAME]);
+                receipt.setCustomer(customer);
+            }
+            for (int column = ADDRESS_LINE_1; column <= COUNTRY; column++) {
+                if (fields[column] != null) {
+                    receipt.setShippingAddress(new ShippingAddress(
+                            fields[ADDRESS_LINE_1],
+                            fields[ADDRESS_LINE_2],
+                            fields[CITY],
+                            fields[STATE],
+                            fields[POSTAL_CODE],
+                            fields[COUNTRY]));
+                    break;
+                }
+            }
+            return receipt;
+        }
+
+        private static void addItem(List<Item> items, String[] fields) {
+            if (fields[ITEM_NAME] == null && fields[QUANTITY] == null && fields[UNIT_PRICE] == null) {
+                return;
+            }
+            Item item = new Item();
+            item.setName(fields[ITEM_NAME]);
+            item.setQuantity(fields[QUANTITY] == null ? 0 : Integer.parseInt(fields[QUANTITY]));
+            item.setUnitPrice(fields[UNIT_PRICE] == null ? 0.0 : Double.parseDouble(fields[UNIT_PRICE]));
+            items.add(item);
+        }
+    }
+
+    /**
+     * Sequential spliterator over a single parser; it does not split, the size is unknown up front.
+     */
+    private static final class ReceiptCsvSpliterator implements Spliterator<Receipt> {
+        private final Parser parser;
+
+        private ReceiptCsvSpliterator(Parser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Receipt> action) {
+            Receipt receipt = parser.next();
+            if (receipt == null) {
+                return false;
+            }
+            action.accept(receipt);
+            return true;
+        }
+
+        @Override
+        public Spliterator<Receipt> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package lab3.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+import lab3.generators.SimpleReceiptGenerator;
+import lab3.model.Customer;
+import lab3.model.Item;
+import lab3.model.Receipt;
+import lab3.model.ReceiptStatus;
+import lab3.model.ShippingAddress;
+import lab3.storage.ReceiptFileFormat.Layout;
+
+/**
+ * Binary snapshots of receipt datasets (see {@link ReceiptFileFormat}). Benchmarks generate a
+ * dataset once with a fixed seed, store it and load the very same receipts in later runs, forks
+ * and on other machines via {@link #loadOrGenerate}.
+ */
+public final class ReceiptDatasetStore {
+
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private ReceiptDatasetStore() {
+    }
+
+    public static void write(Path path, List<Receipt> receipts) {
+        Objects.requireNonNull(receipts, "receipts");
+        StringDictionary dictionary = new StringDictionary();
+        int[][] receiptRefs = new int[ReceiptFileFormat.RECEIPT_STRING_COLUMNS][receipts.size()];
+        int itemCount = 0;
+        for (int r = 0; r < receipts.size(); r++) {
+            Receipt receipt = receipts.get(r);
+            String[] values = receiptStrings(receipt);
+            for (int column = 0; column < values.length; column++) {
+                receiptRefs[column][r] = ref(dictionary, values[column]);
+            }
+            itemCount += items(receipt).size();
+        }
+        int[] itemRefs = new int[itemCount];
+        int item = 0;
+        for (Receipt receipt : receipts) {
+            for (Item line : items(receipt)) {
+                itemRefs[item++] = ref(dictionary, line.getName());
+            }
+        }
+
+        List<String> strings = dictionary.strings;
+        byte[][] encoded = new byte[strings.size()][];
+        long stringBytes = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            stringBytes += encoded[i].length;
+        }
+        Layout layout = new Layout(receipts.size(), itemCount, encoded.length, stringBytes);
+
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            // пишем во временный файл и переименовываем, чтобы читатель не увидел половину снимка
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (SectionWriter out = new SectionWriter(temporary)) {
+                writeHeader(out, layout);
+                for (Receipt receipt : receipts) {
+                    LocalDateTime date = receipt.getDate();
+                    out.putLong(date == null ? ReceiptFileFormat.NULL_DATE : date.toEpochSecond(ZoneOffset.UTC));
+                }
+                for (Receipt receipt : receipts) {
+                    for (Item line : items(receipt)) {
+                        out.putDouble(line.getUnitPrice());
+                    }
+                }
+                long offset = 0;
+                out.putLong(offset);
+                for (byte[] bytes : encoded) {
+                    offset += bytes.length;
+                    out.putLong(offset);
+                }
+                int itemOffset = 0;
+                out.putInt(itemOffset);
+                for (Receipt receipt : receipts) {
+                    itemOffset += items(receipt).size();
+                    out.putInt(itemOffset);
+                }
+                for (Receipt receipt : receipts) {
+                    out.putInt(receipt.getLoyaltyPointsEarned());
+                }
+                for (int[] column : receiptRefs) {
+                    for (int ref : column) {
+                        out.putInt(ref);
+                    }
+                }
+                for (int ref : itemRefs) {
+                    out.putInt(ref);
+                }
+                for (Receipt receipt : receipts) {
+                    for (Item line : items(receipt)) {
+                        out.putInt(line.getQuantity());
+                    }
+                }
+                for (Receipt receipt : receipts) {
+                    ReceiptStatus status = receipt.getStatus();
+                    out.putByte(status == null ? ReceiptFileFormat.NULL_STATUS : (byte) status.ordinal());
+                }
+                for (byte[] bytes : encoded) {
+                    out.putBytes(bytes);
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write receipt dataset " + path, e);
+        }
+    }
+
+    /**
+     * Reads the whole snapshot back into {@link Receipt} objects. Strings are decoded once per
+     * distinct value and shared between receipts; receipts are materialised in parallel.
+     */
+    public static List<Receipt> read(Path path) {
+        return materialise(MappedReceiptFile.open(path));
+    }
+
+    /**
+     * Loads the snapshot at {@code path} if it exists and holds {@code count} receipts, otherwise
+     * generates them with the given seed, stores them at {@code path} and returns them. Configure
+     * the generator with a fixed {@code withDateWindowEnd} so that regenerated files are identical.
+     * Only the receipt count is checked, so the file name should identify the generator settings.
+     */
+    public static List<Receipt> loadOrGenerate(Path path, SimpleReceiptGenerator generator, int count, long seed) {
+        if (Files.isRegularFile(path)) {
+            MappedReceiptFile file = MappedReceiptFile.open(path);
+            if (file.receiptCount() == count) {
+                return materialise(file);
+            }
+        }
+        List<Receipt> receipts = generator.generateMany(count, seed);
+        write(path, receipts);
+        return receipts;
+    }
+
+    private static List<Receipt> materialise(MappedReceiptFile file) {
+        Receipt[] receipts = new Receipt[file.receiptCount()];
+        IntStream.range(0, receipts.length).parallel().forEach(r -> receipts[r] = file.receipt(r));
+        return new ArrayList<>(Arrays.asList(receipts));
+    }
+
+    private static String[] receiptStrings(Receipt receipt) {
+        String[] values = new String[ReceiptFileFormat.RECEIPT_STRING_COLUMNS];
+        values[ReceiptFileFormat.ID] = receipt.getId();
+        Customer customer = receipt.getCustomer();
+        if (customer != null) {
+            values[ReceiptFileFormat.FIRST_NAME] = customer.getFirstName();
+            values[ReceiptFileFormat.LAST_NAME] = customer.getLastName();
+        }
+        ShippingAddress address = receipt.getShippingAddress();
+        if (address != null) {
+            values[ReceiptFileFormat.ADDRESS_LINE_1] = address.addressLine1();
+            values[ReceiptFileFormat.ADDRESS_LINE_2] = address.addressLine2();
+            values[ReceiptFileFormat.CITY] = address.city();
+            values[ReceiptFileFormat.STATE] = address.state();
+            values[ReceiptFileFormat.POSTAL_CODE] = address.postalCode();
+            values[ReceiptFileFormat.COUNTRY] = address.country();
+        }
+        return values;
+    }
+
+    private static List<Item> items(Receipt receipt) {
+        return receipt.getItems() == null ? List.of() : receipt.getItems();
+    }
+
+    private static int ref(StringDictionary dictionary, String value) {
+        return value == null ? ReceiptFileFormat.NULL_REF : dictionary.idOf(value);
+    }
+
+    private static void writeHeader(SectionWriter out, Layout layout) throws IOException {
+        out.putInt(ReceiptFileFormat.MAGIC);
+        out.putInt(ReceiptFileFormat.VERSION);
+        out.putInt(layout.receiptCount());
+        out.putInt(layout.itemCount());
+        out.putInt(layout.stringCount());
+        out.putInt(0);
+        out.putLong(layout.stringBytes());
+    }
+
+    /**
+     * Single-threaded counterpart of {@code KeyDictionary}: the writer owns it, so no locking is needed.
+     */
+    private static final class StringDictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int idOf(String value) {
+            Integer id = ids.putIfAbsent(value, strings.size());
+            if (id != null) {
+                return id;
+            }
+            strings.add(value);
+            return strings.size() - 1;
+        }
+    }
+
+    /**
+     * Buffered little-endian writer over a file channel.
+     */
+    private static final class SectionWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ReceiptFileFormat.BYTE_ORDER);
+
+        private SectionWriter(Path path) throws IOException {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
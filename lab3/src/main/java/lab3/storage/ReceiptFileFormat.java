@@ -0,0 +1,99 @@
+package lab3.storage;
+
+import java.nio.ByteOrder;
+
+/**
+ * Binary layout of receipt dataset files (version 1). All numbers are little-endian; every column
+ * is a contiguous fixed-width block whose position follows from the counts in the header:
+ *
+ * <pre>
+ * header (32 bytes)   magic "RCPT", version, receiptCount, itemCount, stringCount, reserved, stringBytes
+ * date                long[receiptCount]     epoch seconds (UTC), {@link #NULL_DATE} for missing dates
+ * unitPrice           double[itemCount]
+ * stringOffset        long[stringCount + 1]  byte offsets of the strings inside the string data block
+ * itemOffset          int[receiptCount + 1]  items of receipt r are [itemOffset[r], itemOffset[r + 1])
+ * loyaltyPoints       int[receiptCount]
+ * receipt strings     9 x int[receiptCount]  id, first name, last name, address lines 1 and 2,
+ *                                            city, state, postal code, country
+ * itemName            int[itemCount]
+ * quantity            int[itemCount]
+ * status              byte[receiptCount]     {@code ReceiptStatus} ordinal, -1 for missing status
+ * string data         byte[stringBytes]      UTF-8, one shared dictionary for all string columns
+ * </pre>
+ *
+ * String columns hold ids into the dictionary, {@link #NULL_REF} stands for {@code null}.
+ */
+final class ReceiptFileFormat {
+
+    static final int MAGIC = 0x54504352; // "RCPT" в little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final int NULL_REF = -1;
+    static final long NULL_DATE = Long.MIN_VALUE;
+    static final byte NULL_STATUS = -1;
+
+    static final int ID = 0;
+    static final int FIRST_NAME = 1;
+    static final int LAST_NAME = 2;
+    static final int ADDRESS_LINE_1 = 3;
+    static final int ADDRESS_LINE_2 = 4;
+    static final int CITY = 5;
+    static final int STATE = 6;
+    static final int POSTAL_CODE = 7;
+    static final int COUNTRY = 8;
+    static final int RECEIPT_STRING_COLUMNS = 9;
+
+    private ReceiptFileFormat() {
+    }
+
+    /**
+     * Section offsets of a file with the given counts.
+     */
+    record Layout(int receiptCount, int itemCount, int stringCount, long stringBytes) {
+
+        long dateOffset() {
+            return HEADER_BYTES;
+        }
+
+        long unitPriceOffset() {
+            return dateOffset() + 8L * receiptCount;
+        }
+
+        long stringOffsetOffset() {
+            return unitPriceOffset() + 8L * itemCount;
+        }
+
+        long itemOffsetOffset() {
+            return stringOffsetOffset() + 8L * (stringCount + 1L);
+        }
+
+        long loyaltyPointsOffset() {
+            return itemOffsetOffset() + 4L * (receiptCount + 1L);
+        }
+
+        long receiptStringOffset(int column) {
+            return loyaltyPointsOffset() + 4L * receiptCount * (1L + column);
+        }
+
+        long itemNameOffset() {
+            return receiptStringOffset(RECEIPT_STRING_COLUMNS);
+        }
+
+        long quantityOffset() {
+            return itemNameOffset() + 4L * itemCount;
+        }
+
+        long statusOffset() {
+            return quantityOffset() + 4L * itemCount;
+        }
+
+        long stringDataOffset() {
+            return statusOffset() + receiptCount;
+        }
+
+        long fileSize() {
+            return stringDataOffset() + stringBytes;
+        }
+    }
+}
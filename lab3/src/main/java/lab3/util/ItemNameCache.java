@@ -0,0 +1,209 @@
+package lab3.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import lab3.model.Item;
+
+/**
+ * Bounded, thread-safe memo for item name lookups. Entries are spread over independently locked
+ * segments, each an access-ordered {@link LinkedHashMap} that evicts its least recently used entry
+ * once it is full, so the cache never holds more than {@link #maximumSize()} names.
+ *
+ * <p>Entries are keyed by {@link Item#getName()}, which plays the role of the catalogue key (SKU),
+ * while the wrapped lookup (e.g. {@link Item#getName(long)}) plays the slow catalogue call. A miss
+ * runs the lookup outside the segment lock, and lookups in flight are deduplicated per key: threads
+ * that miss a key another thread is already looking up wait for its result instead of calling the
+ * lookup again, so the lookup runs once per distinct name (while it is not evicted) however many
+ * threads ask for it. {@link Stats#misses()} counts lookup calls; waiting threads count as hits.
+ *
+ * <p>Every access, hits included, takes the lock of the key's segment, because an access-ordered
+ * {@link LinkedHashMap} relinks the entry on {@code get}. Distinct keys spread over up to 16
+ * segments, but threads reading one very hot key serialize on its segment; the lock is held only
+ * for the map access, which is small next to the lookup the cache saves.
+ */
+public final class ItemNameCache {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    private final int maximumSize;
+    private final Segment[] segments;
+    // поиски, которые сейчас выполняются: опоздавшие потоки ждут их результат
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ItemNameCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        int segmentCount = segmentCount(maximumSize);
+        int segmentCapacity = maximumSize / segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // остаток раздаём первым сегментам, чтобы сумма ёмкостей была ровно maximumSize
+            segments[i] = new Segment(segmentCapacity + (i < maximumSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * Returns the cached name of the item, calling {@code lookup} and remembering its result on a miss.
+     * If another thread is already looking the key up, waits for its result (or its exception).
+     * Items without a name are passed straight to the lookup.
+     */
+    public String resolve(Item item, Function<Item, String> lookup) {
+        String key = item.getName();
+        if (key == null) {
+            return lookup.apply(item);
+        }
+        Segment segment = segmentFor(key);
+        String cached = segment.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, pending);
+        if (running != null) {
+            hits.increment();
+            return await(running);
+        }
+        try {
+            // предыдущий поиск мог завершиться между get и putIfAbsent
+            cached = segment.get(key);
+            if (cached != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                String resolved = lookup.apply(item);
+                cached = resolved == null ? null : segment.putIfAbsent(key, resolved);
+            }
+            pending.complete(cached);
+            return cached;
+        } catch (RuntimeException | Error e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    /**
+     * Wraps {@code lookup} into a resolver backed by this cache, ready for
+     * {@code ReceiptStatisticsCollector.withItemNameResolver} or {@code ItemAverageReceiptMetrics.collector}.
+     */
+    public Function<Item, String> resolver(Function<Item, String> lookup) {
+        Objects.requireNonNull(lookup, "lookup");
+        return item -> resolve(item, lookup);
+    }
+
+    public int maximumSize() {
+        return maximumSize;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size());
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    private static String await(CompletableFuture<String> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            // пробрасываем исключение поиска как есть, как его увидел бы сам поток-владелец
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (segments.length - 1)];
+    }
+
+    private static int segmentCount(int maximumSize) {
+        int count = 1;
+        while (count < MAX_SEGMENTS && count * 2 * MIN_SEGMENT_CAPACITY <= maximumSize) {
+            count *= 2;
+        }
+        return count;
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+
+        public long requests() {
+            return hits + misses;
+        }
+
+        public double hitRate() {
+            long requests = requests();
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<String, String> entries;
+
+        private Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private synchronized String get(String key) {
+            return entries.get(key);
+        }
+
+        private synchronized String putIfAbsent(String key, String value) {
+            String existing = entries.putIfAbsent(key, value);
+            return existing != null ? existing : value;
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+        }
+    }
+}
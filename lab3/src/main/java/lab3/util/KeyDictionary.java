@@ -0,0 +1,73 @@
+package lab3.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe dictionary that maps keys to dense {@code int} ids in order of first appearance.
+ * Lookups of known keys are lock-free; assigning a new id takes a short lock so that ids stay
+ * dense and the reverse mapping is always consistent with the forward one.
+ *
+ * @param <K> key type; must have stable {@code equals}/{@code hashCode}
+ */
+public final class KeyDictionary<K> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<K, Integer> ids = new ConcurrentHashMap<>();
+    private volatile Object[] keys = new Object[INITIAL_CAPACITY];
+    private volatile int size;
+
+    /**
+     * Returns the id of the key, assigning the next free id if the key has not been seen yet.
+     */
+    public int idOf(K key) {
+        Objects.requireNonNull(key, "key");
+        Integer existing = ids.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (this) {
+            existing = ids.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            int id = size;
+            Object[] current = keys;
+            if (id == current.length) {
+                current = Arrays.copyOf(current, id * 2);
+            }
+            current[id] = key;
+            keys = current;
+            size = id + 1;
+            ids.put(key, id);
+            return id;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public K keyOf(int id) {
+        // size публикуется после массива, поэтому читаем его первым
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown id: " + id);
+        }
+        return (K) keys[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Snapshot of all keys ordered by id.
+     */
+    @SuppressWarnings("unchecked")
+    public List<K> keys() {
+        int count = size;
+        Object[] current = keys;
+        return (List<K>) List.of(Arrays.copyOf(current, count));
+    }
+}
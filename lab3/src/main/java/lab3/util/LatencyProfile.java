@@ -0,0 +1,90 @@
+package lab3.util;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * How an artificial delay is spent. {@link #busySpin()} keeps a CPU busy and models CPU-bound work,
+ * {@link #parking()} parks the thread and models waiting on I/O, and the jittered profiles sample
+ * the actual delay around the requested one (optionally with rare p99 spikes) before spending it
+ * with another profile.
+ */
+@FunctionalInterface
+public interface LatencyProfile {
+
+    /**
+     * Spends roughly {@code delayNanos}; non-positive values return immediately.
+     */
+    void emulateNanos(long delayNanos);
+
+    default void emulate(long delayMillis) {
+        if (delayMillis > 0) {
+            emulateNanos(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        }
+    }
+
+    static LatencyProfile busySpin() {
+        return LatencySimulator::emulateWorkNanos;
+    }
+
+    static LatencyProfile parking() {
+        return LatencySimulator::emulateWaitNanos;
+    }
+
+    /**
+     * Uniform delay in {@code [delay * (1 - spread), delay * (1 + spread)]}.
+     */
+    static LatencyProfile uniform(double spread, LatencyProfile wait) {
+        double boundedSpread = Math.min(1.0, Math.max(0.0, spread));
+        return jittered(() -> 1.0 + boundedSpread * (2.0 * ThreadLocalRandom.current().nextDouble() - 1.0), wait);
+    }
+
+    /**
+     * Lognormal delay whose median is the requested delay.
+     */
+    static LatencyProfile lognormal(double sigma, LatencyProfile wait) {
+        double positiveSigma = Math.max(0.0, sigma);
+        return jittered(() -> Math.exp(positiveSigma * ThreadLocalRandom.current().nextGaussian()), wait);
+    }
+
+    /**
+     * Wraps this profile so that every {@code 1 / spikeProbability}-th call on average takes
+     * {@code spikeFactor} times longer, e.g. {@code withSpikes(0.01, 20)} for a slow p99.
+     */
+    default LatencyProfile withSpikes(double spikeProbability, double spikeFactor) {
+        LatencyProfile base = this;
+        return delayNanos -> {
+            if (delayNanos > 0 && ThreadLocalRandom.current().nextDouble() < spikeProbability) {
+                base.emulateNanos((long) (delayNanos * spikeFactor));
+            } else {
+                base.emulateNanos(delayNanos);
+            }
+        };
+    }
+
+    /**
+     * Profile by name, for benchmark parameters and command line arguments:
+     * {@code busy-spin}, {@code park}, {@code uniform}, {@code lognormal} or {@code lognormal-spikes}.
+     * The jittered profiles park.
+     */
+    static LatencyProfile named(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "busy-spin", "fixed" -> busySpin();
+            case "park" -> parking();
+            case "uniform" -> uniform(0.5, parking());
+            case "lognormal" -> lognormal(0.5, parking());
+            case "lognormal-spikes" -> lognormal(0.5, parking()).withSpikes(0.01, 20.0);
+            default -> throw new IllegalArgumentException("Unknown latency profile: " + name);
+        };
+    }
+
+    private static LatencyProfile jittered(DoubleSupplier factor, LatencyProfile wait) {
+        return delayNanos -> {
+            if (delayNanos > 0) {
+                wait.emulateNanos((long) (delayNanos * factor.getAsDouble()));
+            }
+        };
+    }
+}
@@ -4,10 +4,12 @@ import java.time.Duration;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Busy-work latency emulator used by lab3 benchmarks. It intentionally keeps the CPU busy so that
  * timing measurements capture realistic processing rather than scheduler-induced sleeps.
+ * {@link #emulateWait(long)} is the parking alternative; {@link LatencyProfile} selects between them.
  */
 public final class LatencySimulator {
 
@@ -33,7 +35,13 @@ public final class LatencySimulator {
             return;
         }
 
-        long targetNanos = toNanosSafely(positiveDuration);
+        emulateWorkNanos(toNanosSafely(positiveDuration));
+    }
+
+    /**
+     * Nanosecond-precision busy-work, used by {@link LatencyProfile}s that sample sub-millisecond delays.
+     */
+    public static void emulateWorkNanos(long targetNanos) {
         if (targetNanos <= 0) {
             return;
         }
@@ -58,6 +66,29 @@ public final class LatencySimulator {
         SINK.accumulate(accumulator);
     }
 
+    /**
+     * Blocking counterpart of {@link #emulateWork(long)}: parks the current thread until the delay has
+     * elapsed, which models waiting on I/O (e.g. a remote catalogue) without occupying a CPU.
+     * On a virtual thread this unmounts the carrier thread.
+     */
+    public static void emulateWait(long delayMillis) {
+        if (delayMillis <= 0) {
+            return;
+        }
+        emulateWaitNanos(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    }
+
+    public static void emulateWaitNanos(long targetNanos) {
+        if (targetNanos <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + targetNanos;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
     private static long toNanosSafely(Duration duration) {
         Objects.requireNonNull(duration, "duration");
         try {